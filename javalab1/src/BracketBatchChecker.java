@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Пакетная проверка каталога: каждый файл дерева проверяется в отдельном виртуальном потоке
+ * одним общим {@link BracketChecker}. Число одновременно открытых файлов ограничено
+ * семафором; обход каталога ждёт свободного места, поэтому очередь задач тоже не растёт.
+ */
+public class BracketBatchChecker {
+    private final BracketChecker checker;
+    private final Semaphore openFiles;
+
+    public BracketBatchChecker(BracketChecker checker, int maxOpenFiles) {
+        if (maxOpenFiles <= 0) {
+            throw new IllegalArgumentException("Число одновременно открытых файлов должно быть положительным");
+        }
+        this.checker = checker;
+        this.openFiles = new Semaphore(maxOpenFiles);
+    }
+
+    public BracketBatchReport checkDirectory(Path root) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Queue<BracketCheckResult> results = new ConcurrentLinkedQueue<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                openFiles.acquire();
+                executor.submit(() -> {
+                    try {
+                        results.add(checkOne(file));
+                    } finally {
+                        openFiles.release();
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<BracketCheckResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing(BracketCheckResult::getPath));
+        return new BracketBatchReport(sorted, System.nanoTime() - start);
+    }
+
+    private BracketCheckResult checkOne(Path file) {
+        long start = System.nanoTime();
+        try {
+            return checker.check(file);
+        } catch (IOException | RuntimeException e) {
+            return BracketCheckResult.ioError(file, e, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Отчёт пакетной проверки: результаты по файлам (в порядке путей) и общее время.
+ */
+public final class BracketBatchReport {
+    private final List<BracketCheckResult> results;
+    private final long elapsedNanos;
+
+    BracketBatchReport(List<BracketCheckResult> results, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<BracketCheckResult> getResults() {
+        return results;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getFileCount() {
+        return results.size();
+    }
+
+    public long count(BracketCheckResult.Status status) {
+        return results.stream().filter(result -> result.getStatus() == status).count();
+    }
+
+    public boolean isAllValid() {
+        return results.stream().allMatch(BracketCheckResult::isValid);
+    }
+
+    @Override
+    public String toString() {
+        return "Проверено файлов: " + results.size()
+                + ", без ошибок: " + count(BracketCheckResult.Status.OK)
+                + ", с ошибками: " + (results.size() - count(BracketCheckResult.Status.OK)
+                - count(BracketCheckResult.Status.IO_ERROR))
+                + ", не прочитано: " + count(BracketCheckResult.Status.IO_ERROR)
+                + ", время: " + elapsedNanos / 1_000_000 + " мс";
+    }
+}
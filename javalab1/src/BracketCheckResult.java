@@ -0,0 +1,82 @@
+import java.nio.file.Path;
+
+/**
+ * Результат проверки одного файла: статус, позиция первой ошибки и время проверки.
+ * Строки и столбцы считаются с единицы; для файлов без ошибок позиция равна -1.
+ */
+public final class BracketCheckResult {
+    public enum Status {
+        OK,
+        UNEXPECTED_CLOSING,
+        MISMATCHED_CLOSING,
+        UNCLOSED,
+        IO_ERROR
+    }
+
+    private final Path path;
+    private final Status status;
+    private final String message;
+    private final long position;
+    private final long byteOffset;
+    private final long line;
+    private final long column;
+    private final long elapsedNanos;
+
+    BracketCheckResult(Path path, Status status, String message,
+                       long position, long byteOffset, long line, long column, long elapsedNanos) {
+        this.path = path;
+        this.status = status;
+        this.message = message;
+        this.position = position;
+        this.byteOffset = byteOffset;
+        this.line = line;
+        this.column = column;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    static BracketCheckResult ioError(Path path, Exception e, long elapsedNanos) {
+        return new BracketCheckResult(path, Status.IO_ERROR, "Ошибка при чтении файла: " + e.getMessage(),
+                -1, -1, -1, -1, elapsedNanos);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isValid() {
+        return status == Status.OK;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public long getColumn() {
+        return column;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return path + ": " + status + " (" + elapsedNanos / 1_000 + " мкс) " + message;
+    }
+}
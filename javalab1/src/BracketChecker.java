@@ -1,79 +1,444 @@
 import org.json.JSONArray;
 import org.json.JSONObject;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class BracketChecker {
-    private final Map<Character, Character> bracketPairs;
-    private final Map<Character, Character> reverseBracketPairs;
+    // Размер буфера чтения: память не зависит от размера файла (кроме стека открытых скобок)
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Границы размера части файла в параллельном режиме
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final DelimiterAutomaton automaton;
 
     public BracketChecker(String configFilePath) throws IOException {
-        this.bracketPairs = new HashMap<>();
-        this.reverseBracketPairs = new HashMap<>();
-        loadBracketConfig(configFilePath);
+        this.automaton = loadBracketConfig(configFilePath);
     }
 
-    private void loadBracketConfig(String configFilePath) throws IOException {
+    // "bracket" — пары скобок: строки любой длины, при совпадении "left" и "right" скобка симметричная.
+    // Необязательный "region" — области, внутри которых скобки не учитываются,
+    // например {"start": "/*", "end": "*/"} или {"start": "\"", "end": "\"", "escape": "\\"}.
+    private static DelimiterAutomaton loadBracketConfig(String configFilePath) throws IOException {
         String content = new String(Files.readAllBytes(Paths.get(configFilePath)));
         JSONObject config = new JSONObject(content);
         JSONArray brackets = config.getJSONArray("bracket");
+        DelimiterAutomaton.Builder builder = new DelimiterAutomaton.Builder();
 
         for (int i = 0; i < brackets.length(); i++) {
             JSONObject pair = brackets.getJSONObject(i);
-            char left = pair.getString("left").charAt(0);
-            char right = pair.getString("right").charAt(0);
-            bracketPairs.put(left, right);
-            reverseBracketPairs.put(right, left);
+            builder.addPair(pair.getString("left"), pair.getString("right"));
+        }
+
+        JSONArray regions = config.optJSONArray("region");
+        if (regions != null) {
+            for (int i = 0; i < regions.length(); i++) {
+                JSONObject region = regions.getJSONObject(i);
+                builder.addRegion(region.getString("start"), region.getString("end"),
+                        region.optString("escape", null));
+            }
+        }
+
+        try {
+            return builder.build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректная конфигурация скобок: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Проверяет файл и печатает результат: сообщение об успехе — в System.out, об ошибке — в System.err.
+     */
     public void checkFile(String filePath) throws IOException {
-        String content = new String(Files.readAllBytes(Paths.get(filePath)));
-        Stack<BracketPosition> stack = new Stack<>();
-
-        for (int i = 0; i < content.length(); i++) {
-            char current = content.charAt(i);
-
-            if (bracketPairs.containsKey(current)) {
-                stack.push(new BracketPosition(current, i));
-            } else if (reverseBracketPairs.containsKey(current)) {
-                if (stack.isEmpty()) {
-                    System.err.println("Ошибка: Неожиданная закрывающая скобка '" + current + "' в позиции " + i);
-                    return;
+        print(check(Paths.get(filePath)));
+    }
+
+    /**
+     * Параллельный вариант {@link #checkFile(String)}.
+     */
+    public void checkFileParallel(String filePath) throws IOException {
+        print(checkParallel(Paths.get(filePath)));
+    }
+
+    /**
+     * Проверяет файл потоково: содержимое читается через буфер фиксированного размера
+     * и декодируется как UTF-8, поэтому файл любого размера не загружается в память целиком.
+     * Позиция — номер символа, дополнительно указываются смещение в байтах, строка и столбец.
+     * Таблицы скобок после загрузки не меняются, поэтому один экземпляр можно
+     * использовать из нескольких потоков одновременно.
+     */
+    public BracketCheckResult check(Path path) throws IOException {
+        long start = System.nanoTime();
+        BracketSummary summary = new BracketSummary();
+        DelimiterScanner scanner = new DelimiterScanner(automaton, summary, true);
+        CharsetDecoder decoder = newDecoder();
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) < 0;
+                bytes.flip();
+                if (!scan(bytes, endOfInput, decoder, chars, scanner)) {
+                    break;
+                }
+                bytes.compact();
+            }
+        }
+
+        return toResult(path, summary, System.nanoTime() - start);
+    }
+
+    /**
+     * Параллельная проверка: файл отображается в память частями, каждая часть сворачивается
+     * в {@link BracketSummary} на ForkJoinPool, затем свёртки объединяются слева направо.
+     * Часть, неверно угадавшая роль симметричной скобки на своём левом краю, разбирается
+     * заново от точного состояния слева. Результат совпадает с {@link #check(Path)}.
+     * Если файл нельзя проверять по частям (см. {@link #isSplittable()}), он проверяется
+     * последовательно.
+     */
+    public BracketCheckResult checkParallel(Path path) throws IOException {
+        if (!automaton.isSplittable()) {
+            return check(path);
+        }
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int parallelism = ForkJoinPool.commonPool().getParallelism();
+            long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                    Math.max(MIN_CHUNK_SIZE, size / ((long) parallelism * CHUNKS_PER_THREAD) + 1));
+            int chunkCount = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+
+            BracketSummary[] summaries = new BracketSummary[chunkCount];
+            ChunkTask task = new ChunkTask(channel, size, chunkSize, summaries, 0, chunkCount);
+            try {
+                ForkJoinPool.commonPool().invoke(task);
+                // Свёртка summary точна: это начало файла. Она дописывается на месте, поэтому стек
+                // открытых скобок не копируется на каждой части
+                BracketSummary summary = summaries[0];
+                for (int i = 1; i < chunkCount && !summary.hasError() && summary.closings.isEmpty(); i++) {
+                    if (failedGuess(summary, summaries[i]) < 0) {
+                        append(summary, summaries[i]);
+                    } else {
+                        task.scanChunk(i, summary, true);
+                    }
                 }
+                return toResult(path, summary, System.nanoTime() - start);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Объединяет свёртки двух соседних участков: закрывающие скобки правого участка
+     * сопоставляются с открывающими левого, позиции правого сдвигаются на длину левого.
+     * Догадки правого участка о симметричных скобках считаются верными (см. {@link #failedGuess}),
+     * непроверенные переходят в результат вслед за догадками левого. Аргументы не изменяются.
+     */
+    BracketSummary combine(BracketSummary left, BracketSummary right) {
+        BracketSummary result = new BracketSummary(left.closings.copy(), left.openings.copy());
+        result.chars = left.chars;
+        result.bytes = left.bytes;
+        result.newlines = left.newlines;
+        result.tailColumns = left.tailColumns;
+        result.setError(left.errorKind, left.errorToken, left.errorPosition, left.errorByteOffset, left.errorLine,
+                left.errorColumn);
+        result.setOpening(left.openingPair, left.openingPosition, left.openingByteOffset, left.openingLine,
+                left.openingColumn);
+        result.addGuesses(left, 0, 0);
+        append(result, right);
+        return result;
+    }
+
+    /**
+     * То же, что {@link #combine}, но правая свёртка дописывается к левой на месте.
+     * Стеки объединяются и после ошибки так же, как их строит сканер, продолжающий разбор
+     * после ошибки; остаётся первая по позиции ошибка.
+     */
+    void append(BracketSummary left, BracketSummary right) {
+        long chars = left.chars;
+        long bytes = left.bytes;
+        long newlines = left.newlines;
+        long tailColumns = left.tailColumns;
+        left.chars += right.chars;
+        left.bytes += right.bytes;
+        left.newlines += right.newlines;
+        left.tailColumns = right.newlines > 0 ? right.tailColumns : tailColumns + right.tailColumns;
+
+        BracketStack openings = left.openings;
+        left.addGuesses(right, openings.size(), left.closings.size() - openings.size());
+        BracketStack closings = right.closings;
+        for (int i = 0; i < closings.size(); i++) {
+            int closing = closings.bracket(i);
+            long line = closings.line(i);
+            long position = closings.position(i) + chars;
+            long byteOffset = closings.byteOffset(i) + bytes;
+            long column = shiftColumn(closings.column(i), line, tailColumns);
+            line += newlines;
+
+            if (openings.isEmpty()) {
+                left.closings.push(closing, position, byteOffset, line, column);
+                continue;
+            }
+
+            int opened = openings.pop();
+            if (automaton.closingToken(openings.bracket(opened)) != closing && !left.hasError()
+                    && (!right.hasError() || closings.position(i) < right.errorPosition)) {
+                left.setError(BracketSummary.MISMATCHED_CLOSING, closing, position, byteOffset, line, column);
+                left.setOpening(openings.bracket(opened), openings.position(opened), openings.byteOffset(opened),
+                        openings.line(opened), openings.column(opened));
+            }
+        }
+
+        if (right.hasError() && !left.hasError()) {
+            left.setError(right.errorKind, right.errorToken, right.errorPosition + chars,
+                    right.errorByteOffset + bytes, right.errorLine + newlines,
+                    shiftColumn(right.errorColumn, right.errorLine, tailColumns));
+            left.setOpening(right.openingPair, right.openingPosition + chars,
+                    right.openingByteOffset + bytes, right.openingLine + newlines,
+                    shiftColumn(right.openingColumn, right.openingLine, tailColumns));
+        }
+
+        BracketStack rightOpenings = right.openings;
+        for (int i = 0; i < rightOpenings.size(); i++) {
+            long line = rightOpenings.line(i);
+            openings.push(rightOpenings.bracket(i), rightOpenings.position(i) + chars,
+                    rightOpenings.byteOffset(i) + bytes, line + newlines,
+                    shiftColumn(rightOpenings.column(i), line, tailColumns));
+        }
+    }
 
-                BracketPosition lastOpened = stack.pop();
-                char expectedClosing = bracketPairs.get(lastOpened.bracket);
-                if (current != expectedClosing) {
-                    System.err.println("Ошибка: Ожидалась закрывающая скобка '" + expectedClosing +
-                            "', но найдена '" + current + "' в позиции " + i);
-                    System.err.println("Соответствующая открывающая скобка '" + lastOpened.bracket +
-                            "' была в позиции " + lastOpened.position);
-                    return;
+    /**
+     * Номер первой неверной догадки участка right о симметричных скобках (см. {@link BracketSummary})
+     * при открытых скобках left или -1, если все догадки, которые можно проверить по left, верны.
+     */
+    static int failedGuess(BracketSummary left, BracketSummary right) {
+        BracketStack openings = left.openings;
+        for (int i = 0; i < right.guessCount(); i++) {
+            int level = right.guessLevel(i);
+            if (level < openings.size()
+                    && (openings.bracket(openings.size() - 1 - level) == right.guessPair(i)) != right.guessCloses(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * true, если файл можно проверять по частям: все разделители односимвольные и областей нет.
+     * Иначе {@link #checkParallel(Path)} проверяет файл последовательно, как {@link #check(Path)}.
+     */
+    public boolean isSplittable() {
+        return automaton.isSplittable();
+    }
+
+    DelimiterAutomaton automaton() {
+        return automaton;
+    }
+
+    private static long shiftColumn(long column, long line, long leftTailColumns) {
+        return line == 0 && column != BracketSummary.UNKNOWN_COLUMN ? column + leftTailColumns : column;
+    }
+
+    /**
+     * Декодирует доступные байты и передаёт полученные символы сканеру.
+     * Испорченная последовательность байт считается одним символом U+FFFD, а смещение
+     * в байтах сдвигается на её настоящую длину. Возвращает false, если найдена ошибка.
+     */
+    private static boolean scan(ByteBuffer bytes, boolean endOfInput, CharsetDecoder decoder, CharBuffer chars,
+                                DelimiterScanner scanner) {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            if (endOfInput && result.isUnderflow()) {
+                result = decoder.flush(chars);
+            }
+            chars.flip();
+            boolean completed = scanner.scan(chars);
+            chars.clear();
+            if (!completed) {
+                return false;
+            }
+            if (result.isError()) {
+                if (!scanner.scanMalformed(result.length())) {
+                    return false;
                 }
+                bytes.position(bytes.position() + result.length());
             }
+        } while (result.isOverflow() || result.isError());
+        return !endOfInput || scanner.finish();
+    }
+
+    BracketCheckResult toResult(Path path, BracketSummary summary, long elapsedNanos) {
+        // Закрывающая скобка без пары в начале свёртки — ошибка, если она раньше ошибки внутри
+        if (!summary.closings.isEmpty()
+                && (!summary.hasError() || summary.closings.position(0) < summary.errorPosition)) {
+            BracketStack closings = summary.closings;
+            return error(path, BracketCheckResult.Status.UNEXPECTED_CLOSING,
+                    "Ошибка: Неожиданная закрывающая скобка '" + automaton.tokenText(closings.bracket(0))
+                            + "' в позиции " + formatPosition(closings, 0),
+                    closings.position(0), closings.byteOffset(0), closings.line(0), closings.column(0),
+                    elapsedNanos);
+        } else if (summary.errorKind == BracketSummary.UNEXPECTED_CLOSING) {
+            return error(path, BracketCheckResult.Status.UNEXPECTED_CLOSING,
+                    "Ошибка: Неожиданная закрывающая скобка '" + automaton.tokenText(summary.errorToken)
+                            + "' в позиции " + formatPosition(summary.errorPosition, summary.errorByteOffset,
+                            summary.errorLine, summary.errorColumn),
+                    summary.errorPosition, summary.errorByteOffset, summary.errorLine, summary.errorColumn,
+                    elapsedNanos);
+        } else if (summary.errorKind == BracketSummary.MISMATCHED_CLOSING) {
+            return error(path, BracketCheckResult.Status.MISMATCHED_CLOSING,
+                    "Ошибка: Ожидалась закрывающая скобка '" + automaton.closing(summary.openingPair) +
+                            "', но найдена '" + automaton.tokenText(summary.errorToken) + "' в позиции "
+                            + formatPosition(summary.errorPosition, summary.errorByteOffset,
+                            summary.errorLine, summary.errorColumn) + System.lineSeparator()
+                            + "Соответствующая открывающая скобка '" + automaton.opening(summary.openingPair) +
+                            "' была в позиции " + formatPosition(summary.openingPosition, summary.openingByteOffset,
+                            summary.openingLine, summary.openingColumn),
+                    summary.errorPosition, summary.errorByteOffset, summary.errorLine, summary.errorColumn,
+                    elapsedNanos);
+        } else if (!summary.openings.isEmpty()) {
+            BracketStack openings = summary.openings;
+            int unclosed = openings.size() - 1;
+            return error(path, BracketCheckResult.Status.UNCLOSED,
+                    "Ошибка: Не закрыта скобка '" + automaton.opening(openings.bracket(unclosed)) +
+                            "' в позиции " + formatPosition(openings, unclosed),
+                    openings.position(unclosed), openings.byteOffset(unclosed), openings.line(unclosed),
+                    openings.column(unclosed), elapsedNanos);
         }
+        return new BracketCheckResult(path, BracketCheckResult.Status.OK,
+                "Проверка завершена успешно: все скобки расставлены правильно.", -1, -1, -1, -1, elapsedNanos);
+    }
 
-        if (!stack.isEmpty()) {
-            BracketPosition unclosed = stack.pop();
-            System.err.println("Ошибка: Не закрыта скобка '" + unclosed.bracket +
-                    "' в позиции " + unclosed.position);
+    // Строки и столбцы в свёртке считаются с нуля, в результате — с единицы
+    private static BracketCheckResult error(Path path, BracketCheckResult.Status status, String message,
+                                            long position, long byteOffset, long line, long column,
+                                            long elapsedNanos) {
+        return new BracketCheckResult(path, status, message, position, byteOffset, line + 1, column + 1,
+                elapsedNanos);
+    }
+
+    private static void print(BracketCheckResult result) {
+        if (result.isValid()) {
+            System.out.println(result.getMessage());
         } else {
-            System.out.println("Проверка завершена успешно: все скобки расставлены правильно.");
+            System.err.println(result.getMessage());
+        }
+    }
+
+    // Ошибки декодирования обрабатывает scan: при замене декодером длина испорченной
+    // последовательности в байтах была бы потеряна
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    private static boolean isContinuationByte(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    // Граница частей около offset: первый байт не продолжения символа, но не дальше offset + 3.
+    // Обе соседние части считают её одинаково: более длинный хвост байт продолжения — испорченные
+    // последовательности, и их разбирает правая часть
+    private static int boundary(MappedByteBuffer mapped, int offset) {
+        int limit = Math.min(mapped.limit(), offset + 3);
+        int boundary = offset;
+        while (boundary < limit && isContinuationByte(mapped.get(boundary))) {
+            boundary++;
         }
+        return boundary;
     }
 
-    private static class BracketPosition {
-        char bracket;
-        int position;
+    // Строки и столбцы в свёртке считаются с нуля, в сообщениях — с единицы
+    private static String formatPosition(long position, long byteOffset, long line, long column) {
+        return position + " (байт " + byteOffset + ", строка " + (line + 1) + ", столбец " + (column + 1) + ")";
+    }
+
+    private static String formatPosition(BracketStack stack, int index) {
+        return formatPosition(stack.position(index), stack.byteOffset(index), stack.line(index), stack.column(index));
+    }
+
+    /**
+     * Сворачивает части файла с номерами [from, to) в summaries. Границы частей сдвигаются
+     * вперёд до начала символа UTF-8 (не больше чем на 3 байта), поэтому соседние части
+     * стыкуются без разрыва символов.
+     */
+    private class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long size;
+        private final long chunkSize;
+        private final BracketSummary[] summaries;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, long size, long chunkSize, BracketSummary[] summaries, int from, int to) {
+            this.channel = channel;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.summaries = summaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                summaries[from] = new BracketSummary();
+                scanChunk(from, summaries[from], from == 0);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(channel, size, chunkSize, summaries, from, middle),
+                    new ChunkTask(channel, size, chunkSize, summaries, middle, to));
+        }
+
+        /**
+         * Разбирает часть index, дописывая её к summary: к пустой свёртке или к точной свёртке
+         * всего текста до этой части.
+         */
+        void scanChunk(int index, BracketSummary summary, boolean fromStart) {
+            long start = index * chunkSize;
+            long end = Math.min(size, start + chunkSize);
+            // Захватываем до 3 байт следующей части, чтобы дочитать последний символ
+            long mappedEnd = Math.min(size, end + 3);
+            if (start >= size) {
+                return;
+            }
+
+            MappedByteBuffer mapped;
+            try {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, mappedEnd - start);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int first = index > 0 ? boundary(mapped, 0) : 0;
+            int last = boundary(mapped, (int) (end - start));
+            mapped.limit(last);
+            mapped.position(Math.min(first, last));
 
-        BracketPosition(char bracket, int position) {
-            this.bracket = bracket;
-            this.position = position;
+            scan(mapped, true, newDecoder(), CharBuffer.allocate(BUFFER_SIZE),
+                    new DelimiterScanner(automaton, summary, fromStart));
         }
     }
-}
\ No newline at end of file
+}
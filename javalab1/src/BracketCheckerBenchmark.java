@@ -0,0 +1,108 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Замер производительности BracketChecker на файлах разного размера.
+ * Использование: java BracketCheckerBenchmark <config.json> [размеры файлов в МБ...]
+ *
+ * Каждый замер: несколько разогревочных итераций, затем измерительные; итерация длится
+ * не меньше ITERATION_MILLIS. Печатается медиана времени операции и пропускная способность.
+ */
+public class BracketCheckerBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 500;
+    private static final int[] DEFAULT_SIZES_MB = {1, 16, 128};
+
+    // Результаты операций пишутся сюда, чтобы JIT не выбросил вычисления
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Использование: java BracketCheckerBenchmark <config.json> [размеры в МБ...]");
+            return;
+        }
+
+        BracketChecker checker = new BracketChecker(args[0]);
+        int[] sizes = DEFAULT_SIZES_MB;
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (int sizeMb : sizes) {
+            Path file = Files.createTempFile("brackets-" + sizeMb + "mb-", ".txt");
+            try {
+                writeBalancedFile(file, (long) sizeMb << 20);
+                long bytes = Files.size(file);
+                measure("check " + sizeMb + " МБ", bytes, () -> checker.check(file));
+                measure("checkParallel " + sizeMb + " МБ", bytes, () -> checker.checkParallel(file));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Правильная скобочная последовательность со случайной вложенностью и текстом между скобками
+    private static void writeBalancedFile(Path file, long size) throws IOException {
+        Random random = new Random(42);
+        char[] openings = {'(', '[', '{'};
+        char[] closings = {')', ']', '}'};
+        int[] stack = new int[1 << 16];
+        int depth = 0;
+        long written = 0;
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (written < size || depth > 0) {
+                int choice = random.nextInt(10);
+                if (written < size && choice < 3 && depth < stack.length) {
+                    int kind = random.nextInt(openings.length);
+                    stack[depth++] = kind;
+                    writer.write(openings[kind]);
+                    written++;
+                } else if (choice < 6 && depth > 0) {
+                    writer.write(closings[stack[--depth]]);
+                    written++;
+                } else {
+                    String text = choice == 9 ? "\n" : "text ";
+                    writer.write(text);
+                    written += text.length();
+                }
+            }
+        }
+    }
+
+    private static void measure(String name, long bytesPerOp, Callable<Object> operation) throws Exception {
+        List<Double> nanosPerOp = new ArrayList<>();
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURE_ITERATIONS; iteration++) {
+            long operations = 0;
+            long start = System.nanoTime();
+            long deadline = start + ITERATION_MILLIS * 1_000_000;
+            long now;
+            do {
+                sink = operation.call();
+                operations++;
+                now = System.nanoTime();
+            } while (now < deadline);
+            if (iteration >= WARMUP_ITERATIONS) {
+                nanosPerOp.add((double) (now - start) / operations);
+            }
+        }
+
+        Collections.sort(nanosPerOp);
+        double median = nanosPerOp.get(nanosPerOp.size() / 2);
+        System.out.printf("%-32s %12.3f мс/оп  [%.3f .. %.3f]  %10.1f МБ/с%n", name, median / 1e6,
+                nanosPerOp.get(0) / 1e6, nanosPerOp.get(nanosPerOp.size() - 1) / 1e6,
+                bytesPerOp / (median / 1e9) / (1 << 20));
+    }
+}
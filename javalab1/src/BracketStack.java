@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+/**
+ * Стек скобок на параллельных примитивных массивах: push и pop не создают объектов,
+ * массивы растут удвоением. После pop данные снятого элемента остаются доступными
+ * по возвращённому индексу до следующего push.
+ * Для открывающих скобок хранится номер пары, для закрывающих — номер разделителя
+ * в {@link DelimiterAutomaton}.
+ */
+class BracketStack {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] brackets = new int[INITIAL_CAPACITY];
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private long[] byteOffsets = new long[INITIAL_CAPACITY];
+    private long[] lines = new long[INITIAL_CAPACITY];
+    private long[] columns = new long[INITIAL_CAPACITY];
+    private int size;
+
+    void push(int bracket, long position, long byteOffset, long line, long column) {
+        if (size == brackets.length) {
+            grow();
+        }
+        brackets[size] = bracket;
+        positions[size] = position;
+        byteOffsets[size] = byteOffset;
+        lines[size] = line;
+        columns[size] = column;
+        size++;
+    }
+
+    int pop() {
+        return --size;
+    }
+
+    int top() {
+        return size - 1;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int bracket(int index) {
+        return brackets[index];
+    }
+
+    long position(int index) {
+        return positions[index];
+    }
+
+    long byteOffset(int index) {
+        return byteOffsets[index];
+    }
+
+    long line(int index) {
+        return lines[index];
+    }
+
+    long column(int index) {
+        return columns[index];
+    }
+
+    BracketStack copy() {
+        BracketStack copy = new BracketStack();
+        int capacity = Math.max(INITIAL_CAPACITY, size);
+        copy.brackets = Arrays.copyOf(brackets, capacity);
+        copy.positions = Arrays.copyOf(positions, capacity);
+        copy.byteOffsets = Arrays.copyOf(byteOffsets, capacity);
+        copy.lines = Arrays.copyOf(lines, capacity);
+        copy.columns = Arrays.copyOf(columns, capacity);
+        copy.size = size;
+        return copy;
+    }
+
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, brackets.length * 2);
+        brackets = Arrays.copyOf(brackets, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        byteOffsets = Arrays.copyOf(byteOffsets, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+    }
+}
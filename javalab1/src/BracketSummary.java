@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+ * Свёртка участка текста: незакрытые закрывающие скобки в начале участка и незакрытые
+ * открывающие в конце, плюс первая ошибка внутри участка. Две соседние свёртки
+ * объединяются ассоциативно (см. {@link BracketChecker#combine}), поэтому файл можно
+ * проверять по частям в любом порядке.
+ *
+ * Симметричная скобка (например "|") при пустом стеке открывающих участка закрыла бы скобку
+ * слева, если там на вершине та же пара. Участок не с начала файла этого не знает и считает
+ * её открывающей (или спрашивает известный стек слева), а догадку запоминает: уровень (сколько
+ * скобок слева к этому месту уже закрыто), пару и ответ. Перед объединением догадки проверяются
+ * по стеку слева (см. {@link BracketChecker#failedGuess}), участок с неверной догадкой разбирается
+ * заново. Догадки, которые уходят левее левого участка, переходят в объединённую свёртку.
+ *
+ * Позиции внутри свёртки отсчитываются от начала участка; строки и столбцы — с нуля.
+ */
+class BracketSummary {
+    static final byte NO_ERROR = 0;
+    static final byte UNEXPECTED_CLOSING = 1;
+    static final byte MISMATCHED_CLOSING = 2;
+    // Столбец символа на строке, начатой до участка, неизвестен: его находят по тексту
+    static final long UNKNOWN_COLUMN = Long.MIN_VALUE;
+
+    private static final int[] NO_GUESSES = new int[0];
+
+    long chars;
+    long bytes;
+    long newlines;
+    // Символов после последнего перевода строки (или от начала участка, если его нет)
+    long tailColumns;
+
+    final BracketStack closings;
+    final BracketStack openings;
+
+    byte errorKind = NO_ERROR;
+    int errorToken;
+    long errorPosition;
+    long errorByteOffset;
+    long errorLine;
+    long errorColumn;
+
+    // Пара открывающей скобки, с которой не совпала закрывающая (для MISMATCHED_CLOSING)
+    int openingPair;
+    long openingPosition;
+    long openingByteOffset;
+    long openingLine;
+    long openingColumn;
+
+    // Догадки о симметричных скобках: пары (уровень, 2 * пара + 1, если скобка закрывает) подряд
+    private int[] guesses = NO_GUESSES;
+    private int guessCount;
+
+    BracketSummary() {
+        this(new BracketStack(), new BracketStack());
+    }
+
+    BracketSummary(BracketStack closings, BracketStack openings) {
+        this.closings = closings;
+        this.openings = openings;
+    }
+
+    void addGuess(int level, int pair, boolean closes) {
+        int code = 2 * pair + (closes ? 1 : 0);
+        // Подряд одинаковые догадки проверяются одинаково
+        if (guessCount > 0 && guesses[2 * guessCount - 2] == level && guesses[2 * guessCount - 1] == code) {
+            return;
+        }
+        push(level, code);
+    }
+
+    /**
+     * Дописывает догадки other с уровнем не меньше minLevel, сдвигая уровень на shift.
+     */
+    void addGuesses(BracketSummary other, int minLevel, int shift) {
+        for (int i = 0; i < other.guessCount; i++) {
+            if (other.guessLevel(i) >= minLevel) {
+                push(other.guessLevel(i) + shift, other.guesses[2 * i + 1]);
+            }
+        }
+    }
+
+    private void push(int level, int code) {
+        if (2 * guessCount == guesses.length) {
+            guesses = Arrays.copyOf(guesses, Math.max(8, 2 * guesses.length));
+        }
+        guesses[2 * guessCount] = level;
+        guesses[2 * guessCount + 1] = code;
+        guessCount++;
+    }
+
+    int guessCount() {
+        return guessCount;
+    }
+
+    int guessLevel(int index) {
+        return guesses[2 * index];
+    }
+
+    int guessPair(int index) {
+        return guesses[2 * index + 1] >> 1;
+    }
+
+    // Скобка закрыла скобку слева (иначе открыла новую)
+    boolean guessCloses(int index) {
+        return (guesses[2 * index + 1] & 1) != 0;
+    }
+
+    boolean hasError() {
+        return errorKind != NO_ERROR;
+    }
+
+    void setError(byte kind, int token, long position, long byteOffset, long line, long column) {
+        errorKind = kind;
+        errorToken = token;
+        errorPosition = position;
+        errorByteOffset = byteOffset;
+        errorLine = line;
+        errorColumn = column;
+    }
+
+    void setOpening(int pair, long position, long byteOffset, long line, long column) {
+        openingPair = pair;
+        openingPosition = position;
+        openingByteOffset = byteOffset;
+        openingLine = line;
+        openingColumn = column;
+    }
+}
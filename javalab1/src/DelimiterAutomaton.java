@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Скомпилированный набор разделителей: пары скобок (в том числе многосимвольные
+ * и симметричные, например "|" ... "|") и области (строки, комментарии), внутри
+ * которых скобки не учитываются.
+ *
+ * Для каждого режима (вне областей и внутри каждой области) строится детерминированный
+ * автомат-бор по всем разделителям режима. Алфавит сжат до классов: все символы, которые
+ * не встречаются ни в одном разделителе, попадают в класс 0, поэтому таблица переходов
+ * мала, а обычный текст проходит за один переход на символ независимо от числа разделителей.
+ * Объект неизменяем и может использоваться из нескольких потоков.
+ */
+class DelimiterAutomaton {
+    static final int DEAD = -1;
+    static final int NO_TOKEN = -1;
+    static final int NO_PAIR = -1;
+    static final int NO_REGION = -1;
+
+    // Роль разделителя внутри области
+    static final byte REGION_END = 1;
+    static final byte REGION_ESCAPE = 2;
+
+    private final int[] charClasses;
+    private final int classCount;
+    private final int[] transitions;
+    private final int[] accepts;
+    private final boolean[] leaves;
+    private final int[] roots;
+    private final int maxTokenLength;
+
+    private final String[] tokenTexts;
+    private final int[] tokenOpenPairs;
+    private final int[] tokenClosePairs;
+    private final int[] tokenRegionStarts;
+    private final byte[] tokenRegionRoles;
+
+    private final String[] pairOpenings;
+    private final int[] pairClosingTokens;
+    private final boolean splittable;
+
+    private DelimiterAutomaton(Builder builder) {
+        List<String> pairs = builder.pairOpenings;
+        List<String[]> regions = builder.regions;
+        int modeCount = regions.size() + 1;
+
+        // Разделители режимов: индекс 0 — вне областей, 1 + r — внутри области r
+        List<Map<String, Integer>> modeTokens = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<int[]> roles = new ArrayList<>();
+        for (int mode = 0; mode < modeCount; mode++) {
+            modeTokens.add(new HashMap<>());
+        }
+
+        for (int pair = 0; pair < pairs.size(); pair++) {
+            tokenRoles(modeTokens.get(0), texts, roles, pairs.get(pair))[0] = pair;
+        }
+        int[] closingTokens = new int[pairs.size()];
+        for (int pair = 0; pair < pairs.size(); pair++) {
+            String closing = builder.pairClosings.get(pair);
+            tokenRoles(modeTokens.get(0), texts, roles, closing)[1] = pair;
+            closingTokens[pair] = modeTokens.get(0).get(closing);
+        }
+        for (int region = 0; region < regions.size(); region++) {
+            String[] definition = regions.get(region);
+            int[] start = tokenRoles(modeTokens.get(0), texts, roles, definition[0]);
+            if (start[0] != NO_PAIR || start[1] != NO_PAIR) {
+                throw new IllegalArgumentException("Разделитель '" + definition[0]
+                        + "' задан и как скобка, и как начало области");
+            }
+            start[2] = region;
+            tokenRoles(modeTokens.get(region + 1), texts, roles, definition[1])[3] = REGION_END;
+            if (definition[2] != null) {
+                tokenRoles(modeTokens.get(region + 1), texts, roles, definition[2])[3] = REGION_ESCAPE;
+            }
+        }
+
+        int tokenCount = texts.size();
+        tokenTexts = texts.toArray(new String[0]);
+        tokenOpenPairs = new int[tokenCount];
+        tokenClosePairs = new int[tokenCount];
+        tokenRegionStarts = new int[tokenCount];
+        tokenRegionRoles = new byte[tokenCount];
+        int longest = 0;
+        for (int token = 0; token < tokenCount; token++) {
+            int[] role = roles.get(token);
+            tokenOpenPairs[token] = role[0];
+            tokenClosePairs[token] = role[1];
+            tokenRegionStarts[token] = role[2];
+            tokenRegionRoles[token] = (byte) role[3];
+            longest = Math.max(longest, tokenTexts[token].length());
+        }
+        maxTokenLength = longest;
+        splittable = regions.isEmpty() && longest <= 1;
+        pairOpenings = pairs.toArray(new String[0]);
+        pairClosingTokens = closingTokens;
+
+        // Сжатие алфавита: каждому символу разделителей — свой класс, остальным — класс 0
+        charClasses = new int[Character.MAX_VALUE + 1];
+        int classes = 1;
+        for (String text : tokenTexts) {
+            for (int i = 0; i < text.length(); i++) {
+                if (charClasses[text.charAt(i)] == 0) {
+                    charClasses[text.charAt(i)] = classes++;
+                }
+            }
+        }
+        classCount = classes;
+
+        // Бор по разделителям каждого режима; состояния всех режимов в одной таблице
+        List<int[]> rows = new ArrayList<>();
+        List<Integer> accepted = new ArrayList<>();
+        roots = new int[modeCount];
+        for (int mode = 0; mode < modeCount; mode++) {
+            roots[mode] = newState(rows, accepted);
+            for (Map.Entry<String, Integer> entry : modeTokens.get(mode).entrySet()) {
+                int state = roots[mode];
+                String text = entry.getKey();
+                for (int i = 0; i < text.length(); i++) {
+                    int charClass = charClasses[text.charAt(i)];
+                    if (rows.get(state)[charClass] == DEAD) {
+                        int next = newState(rows, accepted);
+                        rows.get(state)[charClass] = next;
+                    }
+                    state = rows.get(state)[charClass];
+                }
+                accepted.set(state, entry.getValue());
+            }
+        }
+
+        transitions = new int[rows.size() * classCount];
+        accepts = new int[rows.size()];
+        leaves = new boolean[rows.size()];
+        for (int state = 0; state < rows.size(); state++) {
+            int[] row = rows.get(state);
+            System.arraycopy(row, 0, transitions, state * classCount, classCount);
+            accepts[state] = accepted.get(state);
+            leaves[state] = Arrays.stream(row).allMatch(next -> next == DEAD);
+        }
+    }
+
+    private int newState(List<int[]> rows, List<Integer> accepted) {
+        int[] row = new int[classCount];
+        Arrays.fill(row, DEAD);
+        rows.add(row);
+        accepted.add(NO_TOKEN);
+        return rows.size() - 1;
+    }
+
+    // Роли разделителя: {открывает пару, закрывает пару, начинает область, роль в области}
+    private static int[] tokenRoles(Map<String, Integer> modeTokens, List<String> texts, List<int[]> roles,
+                                    String text) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Пустой разделитель в конфигурации");
+        }
+        Integer token = modeTokens.get(text);
+        if (token == null) {
+            token = texts.size();
+            modeTokens.put(text, token);
+            texts.add(text);
+            roles.add(new int[]{NO_PAIR, NO_PAIR, NO_REGION, 0});
+        }
+        return roles.get(token);
+    }
+
+    int charClass(char c) {
+        return charClasses[c];
+    }
+
+    int next(int state, int charClass) {
+        return transitions[state * classCount + charClass];
+    }
+
+    int accept(int state) {
+        return accepts[state];
+    }
+
+    boolean isLeaf(int state) {
+        return leaves[state];
+    }
+
+    int root(int mode) {
+        return roots[mode];
+    }
+
+    int maxTokenLength() {
+        return maxTokenLength;
+    }
+
+    /**
+     * Все разделители односимвольные и областей нет: разделитель распознаётся без оглядки
+     * на предшествующий текст, и файл можно проверять по частям. Роль симметричной скобки
+     * при этом всё ещё зависит от стека слева (см. {@link BracketSummary}).
+     */
+    boolean isSplittable() {
+        return splittable;
+    }
+
+    String tokenText(int token) {
+        return tokenTexts[token];
+    }
+
+    int openPair(int token) {
+        return tokenOpenPairs[token];
+    }
+
+    int closePair(int token) {
+        return tokenClosePairs[token];
+    }
+
+    int regionStart(int token) {
+        return tokenRegionStarts[token];
+    }
+
+    byte regionRole(int token) {
+        return tokenRegionRoles[token];
+    }
+
+    String opening(int pair) {
+        return pairOpenings[pair];
+    }
+
+    int closingToken(int pair) {
+        return pairClosingTokens[pair];
+    }
+
+    String closing(int pair) {
+        return tokenTexts[pairClosingTokens[pair]];
+    }
+
+    static class Builder {
+        private final List<String> pairOpenings = new ArrayList<>();
+        private final List<String> pairClosings = new ArrayList<>();
+        private final List<String[]> regions = new ArrayList<>();
+
+        Builder addPair(String opening, String closing) {
+            pairOpenings.add(opening);
+            pairClosings.add(closing);
+            return this;
+        }
+
+        // escape может быть null: тогда экранирования в области нет
+        Builder addRegion(String start, String end, String escape) {
+            regions.add(new String[]{start, end, escape});
+            return this;
+        }
+
+        DelimiterAutomaton build() {
+            return new DelimiterAutomaton(this);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Однопроходный разбор текста автоматом {@link DelimiterAutomaton} со сворачиванием
+ * найденных скобок в {@link BracketSummary}. Разделитель выбирается самый длинный
+ * (например, "{{" раньше "{"); пока автомат не может решить, символы ждут в буфере
+ * длиной не больше самого длинного разделителя. Символы, с которых не начинается ни
+ * один разделитель, проходят без буферизации. Состояние сохраняется между вызовами
+ * {@link #scan}, поэтому разделитель может быть разрезан границей буфера чтения.
+ */
+class DelimiterScanner {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final DelimiterAutomaton automaton;
+    private final BracketSummary summary;
+    // Участок начинается с начала файла: закрывающая скобка без пары — сразу ошибка
+    private final boolean fromStart;
+    // Открытые скобки перед участком, если они известны (для симметричных скобок), иначе null
+    private BracketStack context;
+    // Разбор продолжается после ошибки, чтобы состояние в конце участка было определено
+    private boolean continueAfterError;
+
+    private int mode;
+    private int state;
+    private boolean skipNext;
+    private int acceptLength;
+    private int acceptToken;
+
+    private final char[] pendingChars;
+    private final long[] pendingPositions;
+    private final long[] pendingByteOffsets;
+    private final long[] pendingLines;
+    private final long[] pendingColumns;
+    private int pendingCount;
+    private int cursor;
+
+    DelimiterScanner(DelimiterAutomaton automaton, BracketSummary summary, boolean fromStart) {
+        this.automaton = automaton;
+        this.summary = summary;
+        this.fromStart = fromStart;
+        this.state = automaton.root(0);
+        int capacity = automaton.maxTokenLength() + 1;
+        pendingChars = new char[capacity];
+        pendingPositions = new long[capacity];
+        pendingByteOffsets = new long[capacity];
+        pendingLines = new long[capacity];
+        pendingColumns = new long[capacity];
+    }
+
+    /**
+     * Сканер участка не с начала файла, продолжающий разбор с сохранённого состояния
+     * (см. {@link #saveState()}); context — открытые скобки перед участком или null.
+     * После ошибки разбор идёт до конца участка; запоминается первая ошибка.
+     */
+    DelimiterScanner(DelimiterAutomaton automaton, BracketSummary summary, State saved, BracketStack context) {
+        this(automaton, summary, false);
+        this.context = context;
+        this.continueAfterError = true;
+        mode = saved.mode;
+        state = saved.state;
+        skipNext = saved.skipNext;
+        acceptLength = saved.acceptLength;
+        acceptToken = saved.acceptToken;
+        cursor = saved.cursor;
+        pendingCount = saved.chars.length;
+        System.arraycopy(saved.chars, 0, pendingChars, 0, pendingCount);
+        System.arraycopy(saved.positions, 0, pendingPositions, 0, pendingCount);
+        System.arraycopy(saved.byteOffsets, 0, pendingByteOffsets, 0, pendingCount);
+        System.arraycopy(saved.lines, 0, pendingLines, 0, pendingCount);
+        System.arraycopy(saved.columns, 0, pendingColumns, 0, pendingCount);
+    }
+
+    /**
+     * Состояние разбора между вызовами {@link #scan}: режим, состояние автомата и символы в буфере.
+     */
+    State saveState() {
+        return new State(mode, state, skipNext, acceptLength, acceptToken, cursor,
+                Arrays.copyOf(pendingChars, pendingCount), Arrays.copyOf(pendingPositions, pendingCount),
+                Arrays.copyOf(pendingByteOffsets, pendingCount), Arrays.copyOf(pendingLines, pendingCount),
+                Arrays.copyOf(pendingColumns, pendingCount));
+    }
+
+    /**
+     * Разбирает символы буфера. Возвращает false, если найдена ошибка.
+     */
+    boolean scan(CharBuffer chars) {
+        long position = summary.chars;
+        long byteOffset = summary.bytes;
+        long line = summary.newlines;
+        long column = summary.tailColumns;
+
+        try {
+            while (chars.hasRemaining()) {
+                char current = chars.get();
+
+                boolean buffered = true;
+                if (pendingCount == 0) {
+                    int next = automaton.next(state, automaton.charClass(current));
+                    if (skipNext) {
+                        skipNext = false;
+                        buffered = false;
+                    } else if (next == DelimiterAutomaton.DEAD) {
+                        buffered = false;
+                    } else if (automaton.isLeaf(next)) {
+                        // Односимвольный разделитель, который нельзя продолжить, — без буфера
+                        if (!emit(automaton.accept(next), position, byteOffset, line, column)) {
+                            return false;
+                        }
+                        state = automaton.root(mode);
+                        buffered = false;
+                    }
+                }
+                if (buffered) {
+                    pendingChars[pendingCount] = current;
+                    pendingPositions[pendingCount] = position;
+                    pendingByteOffsets[pendingCount] = byteOffset;
+                    pendingLines[pendingCount] = line;
+                    pendingColumns[pendingCount] = column;
+                    pendingCount++;
+                }
+
+                position++;
+                byteOffset += utf8Length(current);
+                if (current == '\n') {
+                    line++;
+                    column = 0;
+                } else {
+                    column++;
+                }
+
+                if (buffered && !drain(false)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            summary.chars = position;
+            summary.bytes = byteOffset;
+            summary.newlines = line;
+            summary.tailColumns = column;
+        }
+    }
+
+    /**
+     * Разбирает символ U+FFFD на месте испорченной последовательности из byteLength байт.
+     * Возвращает false, если найдена ошибка.
+     */
+    boolean scanMalformed(int byteLength) {
+        boolean completed = scan(CharBuffer.wrap(new char[]{REPLACEMENT}));
+        // scan посчитал длину самого U+FFFD; дальше смещения идут от настоящей длины
+        summary.bytes += byteLength - utf8Length(REPLACEMENT);
+        return completed;
+    }
+
+    /**
+     * Разбирает символы, оставшиеся в буфере в конце ввода. Возвращает false, если найдена ошибка.
+     * Незакрытая в конце ввода область (например, "//" без перевода строки) ошибкой не считается.
+     */
+    boolean finish() {
+        return drain(true);
+    }
+
+    private boolean drain(boolean endOfInput) {
+        while (true) {
+            while (cursor < pendingCount) {
+                if (skipNext && cursor == 0) {
+                    skipNext = false;
+                    removePending(1);
+                    continue;
+                }
+
+                int next = automaton.next(state, automaton.charClass(pendingChars[cursor]));
+                if (next == DelimiterAutomaton.DEAD) {
+                    if (!resolve()) {
+                        return false;
+                    }
+                    continue;
+                }
+
+                state = next;
+                cursor++;
+                if (automaton.accept(next) != DelimiterAutomaton.NO_TOKEN) {
+                    acceptLength = cursor;
+                    acceptToken = automaton.accept(next);
+                    if (automaton.isLeaf(next) && !resolve()) {
+                        return false;
+                    }
+                }
+            }
+            if (!endOfInput || pendingCount == 0) {
+                return true;
+            }
+            if (!resolve()) {
+                return false;
+            }
+        }
+    }
+
+    // Принимает самый длинный найденный разделитель (или пропускает первый символ) и начинает заново
+    private boolean resolve() {
+        int consumed = 1;
+        boolean completed = true;
+        if (acceptLength > 0) {
+            consumed = acceptLength;
+            completed = emit(acceptToken, pendingPositions[0], pendingByteOffsets[0], pendingLines[0],
+                    pendingColumns[0]);
+        }
+        removePending(consumed);
+        state = automaton.root(mode);
+        acceptLength = 0;
+        return completed;
+    }
+
+    private boolean emit(int token, long position, long byteOffset, long line, long column) {
+        if (mode != 0) {
+            byte role = automaton.regionRole(token);
+            if (role == DelimiterAutomaton.REGION_END) {
+                mode = 0;
+            } else if (role == DelimiterAutomaton.REGION_ESCAPE) {
+                skipNext = true;
+            }
+            return true;
+        }
+
+        int region = automaton.regionStart(token);
+        if (region != DelimiterAutomaton.NO_REGION) {
+            mode = region + 1;
+            return true;
+        }
+
+        BracketStack openings = summary.openings;
+
+        // Закрывающая роль важнее открывающей, если на вершине стека её пара (симметричные скобки)
+        if (automaton.closePair(token) != DelimiterAutomaton.NO_PAIR && !openings.isEmpty()
+                && automaton.closingToken(openings.bracket(openings.top())) == token) {
+            openings.pop();
+            return true;
+        }
+        if (automaton.openPair(token) != DelimiterAutomaton.NO_PAIR) {
+            if (openings.isEmpty() && !fromStart && automaton.closePair(token) != DelimiterAutomaton.NO_PAIR) {
+                // Симметричная скобка может закрыть скобку слева — догадка (см. BracketSummary)
+                int level = summary.closings.size();
+                int pair = automaton.closePair(token);
+                boolean closes = context != null && level < context.size()
+                        && context.bracket(context.size() - 1 - level) == pair;
+                summary.addGuess(level, pair, closes);
+                if (closes) {
+                    summary.closings.push(token, position, byteOffset, line, column);
+                    return true;
+                }
+            }
+            openings.push(automaton.openPair(token), position, byteOffset, line, column);
+            return true;
+        }
+
+        if (openings.isEmpty()) {
+            if (fromStart) {
+                summary.setError(BracketSummary.UNEXPECTED_CLOSING, token, position, byteOffset, line, column);
+                return false;
+            }
+            summary.closings.push(token, position, byteOffset, line, column);
+            return true;
+        }
+
+        // Закрывающая скобка снимает открывающую и при несовпадении: так разбор после ошибки
+        // идёт одинаково, как бы текст ни был разбит на участки (см. BracketChecker#append)
+        int lastOpened = openings.pop();
+        if (!summary.hasError()) {
+            summary.setError(BracketSummary.MISMATCHED_CLOSING, token, position, byteOffset, line, column);
+            summary.setOpening(openings.bracket(lastOpened), openings.position(lastOpened),
+                    openings.byteOffset(lastOpened), openings.line(lastOpened), openings.column(lastOpened));
+        }
+        return continueAfterError;
+    }
+
+    private void removePending(int count) {
+        int remaining = pendingCount - count;
+        System.arraycopy(pendingChars, count, pendingChars, 0, remaining);
+        System.arraycopy(pendingPositions, count, pendingPositions, 0, remaining);
+        System.arraycopy(pendingByteOffsets, count, pendingByteOffsets, 0, remaining);
+        System.arraycopy(pendingLines, count, pendingLines, 0, remaining);
+        System.arraycopy(pendingColumns, count, pendingColumns, 0, remaining);
+        pendingCount = remaining;
+        cursor = 0;
+    }
+
+    /**
+     * Сохранённое состояние сканера. Позиции символов в буфере — в отсчёте того сканера,
+     * который его сохранил. Неизменяемо; равенство — по значению.
+     */
+    static final class State {
+        final int mode;
+        final int state;
+        final boolean skipNext;
+        final int acceptLength;
+        final int acceptToken;
+        final int cursor;
+        final char[] chars;
+        final long[] positions;
+        final long[] byteOffsets;
+        final long[] lines;
+        final long[] columns;
+
+        private State(int mode, int state, boolean skipNext, int acceptLength, int acceptToken, int cursor,
+                      char[] chars, long[] positions, long[] byteOffsets, long[] lines, long[] columns) {
+            this.mode = mode;
+            this.state = state;
+            this.skipNext = skipNext;
+            this.acceptLength = acceptLength;
+            this.acceptToken = acceptToken;
+            this.cursor = cursor;
+            this.chars = chars;
+            this.positions = positions;
+            this.byteOffsets = byteOffsets;
+            this.lines = lines;
+            this.columns = columns;
+        }
+
+        /**
+         * То же состояние с другими позициями символов в буфере.
+         */
+        State withPositions(long[] positions, long[] byteOffsets, long[] lines, long[] columns) {
+            return new State(mode, state, skipNext, acceptLength, acceptToken, cursor, chars, positions, byteOffsets,
+                    lines, columns);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            State other = (State) obj;
+            return mode == other.mode && state == other.state && skipNext == other.skipNext
+                    && acceptLength == other.acceptLength && acceptToken == other.acceptToken
+                    && cursor == other.cursor && Arrays.equals(chars, other.chars)
+                    && Arrays.equals(positions, other.positions) && Arrays.equals(byteOffsets, other.byteOffsets)
+                    && Arrays.equals(lines, other.lines) && Arrays.equals(columns, other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * mode + state) + Arrays.hashCode(chars);
+        }
+    }
+
+    // Длина символа в UTF-8; суррогатная пара даёт 2 + 2 = 4 байта
+    static int utf8Length(char c) {
+        if (c < 0x80) return 1;
+        if (c < 0x800 || Character.isSurrogate(c)) return 2;
+        return 3;
+    }
+}
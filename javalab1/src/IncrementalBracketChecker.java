@@ -0,0 +1,412 @@
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Проверка скобок в редактируемом документе. Текст хранится блоками, для каждого блока
+ * хранится свёртка {@link BracketSummary}, а над блоками построено дерево отрезков
+ * из объединённых свёрток. После вставки или удаления пересчитывается только изменённый
+ * блок и путь от него к корню: O(B + log n) сканирования, где B — размер блока.
+ * Объединение свёрток копирует незакрытые скобки узлов, поэтому обновление дешёвое,
+ * пока в документе мало незакрытых скобок (типичный случай при редактировании).
+ *
+ * Если разделитель зависит от предшествующего текста (многосимвольные разделители, области),
+ * для каждого блока хранится ещё состояние сканера на входе в него. После правки блоки
+ * сворачиваются заново с изменённого, пока состояние на очередной границе не совпадёт
+ * с сохранённым: дальше разбор шёл бы так же, как раньше. Стек скобок в состояние не входит —
+ * его несут свёртки, поэтому правка, после которой скобки не сходятся, не заставляет
+ * разбирать документ до конца.
+ *
+ * Роль симметричной скобки на краю блока угадывается (см. {@link BracketSummary}); догадки
+ * проверяются в узлах дерева, и блок с неверной догадкой сворачивается заново при точном
+ * стеке слева.
+ */
+public class IncrementalBracketChecker {
+    private static final int BLOCK_SIZE = 4096;
+
+    private final BracketChecker checker;
+    private final DelimiterAutomaton automaton;
+    private final List<Block> blocks = new ArrayList<>();
+    private final BracketSummary empty = new BracketSummary();
+    // Состояние сканера в начале документа и после последнего блока (в отсчёте от конца документа)
+    private final DelimiterScanner.State initial;
+    private DelimiterScanner.State finalState;
+
+    // Дерево отрезков в виде кучи: листья начинаются с индекса capacity
+    private BracketSummary[] summaries;
+    private long[] lengths;
+    private int capacity;
+    private int emptyBlocks;
+
+    public IncrementalBracketChecker(BracketChecker checker, CharSequence text) {
+        this.checker = checker;
+        this.automaton = checker.automaton();
+        this.initial = new DelimiterScanner(automaton, empty, false).saveState();
+        blocks.addAll(split(text));
+        scanAll();
+    }
+
+    public long length() {
+        return lengths[1];
+    }
+
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        for (Block block : blocks) {
+            text.append(block.text);
+        }
+        return text.toString();
+    }
+
+    public void insert(long offset, CharSequence text) {
+        if (offset < 0 || offset > length()) {
+            throw new IndexOutOfBoundsException("Смещение " + offset + " вне документа длины " + length());
+        }
+        if (text.length() == 0) {
+            return;
+        }
+
+        int index = findBlock(offset);
+        long blockStart = blockStart(index);
+        Block block = blocks.get(index);
+        if (block.text.length() == 0) {
+            emptyBlocks--;
+        }
+        block.text.insert((int) (offset - blockStart), text);
+
+        if (block.text.length() > 2 * BLOCK_SIZE) {
+            // Сворачиваются только новые блоки, свёртки остальных берутся готовыми
+            List<Block> parts = split(block.text);
+            parts.get(0).entry = block.entry;
+            blocks.remove(index);
+            blocks.addAll(index, parts);
+            rebuild();
+            rescan(index, index + parts.size() - 1);
+        } else {
+            rescan(index, index);
+        }
+    }
+
+    public void delete(long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > length()) {
+            throw new IndexOutOfBoundsException("Фрагмент [" + offset + ", " + (offset + length)
+                    + ") вне документа длины " + length());
+        }
+        if (length == 0) {
+            return;
+        }
+
+        long remaining = length;
+        int first = findBlock(offset);
+        int index = first;
+        long position = offset - blockStart(index);
+        while (remaining > 0) {
+            StringBuilder block = blocks.get(index).text;
+            int end = (int) Math.min(block.length(), position + remaining);
+            if (end > position) {
+                block.delete((int) position, end);
+                remaining -= end - position;
+                if (block.length() == 0) {
+                    emptyBlocks++;
+                }
+            }
+            index++;
+            position = 0;
+        }
+        rescan(first, index - 1);
+
+        if (emptyBlocks > blocks.size() / 2) {
+            // Пустой блок не меняет состояния сканера: следующий за ним блок начинается с того же
+            blocks.removeIf(block -> block.text.length() == 0);
+            if (blocks.isEmpty()) {
+                blocks.addAll(split(""));
+                blocks.get(0).entry = initial;
+                summarize(blocks.get(0), null);
+            }
+            rebuild();
+        }
+    }
+
+    /**
+     * Результат проверки всего документа; путь в результате не задан.
+     */
+    public BracketCheckResult check() {
+        long start = System.nanoTime();
+        BracketSummary summary = summaries[1];
+        if (finalState.chars.length > 0) {
+            // Разделители, которые ещё ждут в буфере сканера, разбираются в конце документа
+            BracketSummary tail = new BracketSummary();
+            new DelimiterScanner(automaton, tail, finalState, summary.openings).finish();
+            summary = checker.combine(summary, tail);
+        }
+        return checker.toResult(null, resolveColumns(summary), System.nanoTime() - start);
+    }
+
+    // Разбирает весь документ: блоки по порядку, каждый при точном стеке слева
+    private void scanAll() {
+        BracketSummary before = new BracketSummary();
+        DelimiterScanner.State state = initial;
+        for (Block block : blocks) {
+            block.entry = state;
+            state = summarize(block, before.openings);
+            checker.append(before, block.summary);
+        }
+        finalState = state;
+        rebuild();
+    }
+
+    /**
+     * Сворачивает заново блоки с first по last, а за ними — следующие, пока состояние сканера
+     * на очередной границе не совпадёт с сохранённым. Затем пересчитывает пути к корню.
+     */
+    private void rescan(int first, int last) {
+        DelimiterScanner.State state = null;
+        int index = first;
+        for (; index < blocks.size(); index++) {
+            Block block = blocks.get(index);
+            if (index > first) {
+                if (index > last && state.equals(block.entry)) {
+                    break;
+                }
+                block.entry = state;
+            }
+            state = summarize(block, null);
+        }
+        if (index == blocks.size()) {
+            finalState = state;
+        }
+        for (int i = first; i < index; i++) {
+            update(i);
+        }
+    }
+
+    /**
+     * Сворачивает блок от сохранённого состояния на входе; context — открытые скобки перед
+     * блоком или null, тогда роль симметричной скобки на краю блока угадывается. Возвращает
+     * состояние сканера в конце блока в отсчёте от начала следующего.
+     */
+    private DelimiterScanner.State summarize(Block block, BracketStack context) {
+        BracketSummary summary = new BracketSummary();
+        DelimiterScanner scanner = new DelimiterScanner(automaton, summary, block.entry, context);
+        scanner.scan(CharBuffer.wrap(block.text));
+        block.summary = summary;
+        return nextFrame(scanner.saveState(), summary);
+    }
+
+    // Пересчитывает путь от блока index к корню. Если в узле не подтвердилась догадка правой
+    // половины о симметричной скобке, блок с этой догадкой сворачивается заново при точном стеке
+    // слева, и пересчёт идёт уже от него; такие блоки находятся слева направо
+    private void update(int index) {
+        for (int leaf = index; leaf >= 0; ) {
+            int node = capacity + leaf;
+            lengths[node] = blocks.get(leaf).text.length();
+            summaries[node] = blocks.get(leaf).summary;
+            leaf = -1;
+            for (node >>>= 1; node > 0 && leaf < 0; node >>>= 1) {
+                int failed = BracketChecker.failedGuess(summaries[2 * node], summaries[2 * node + 1]);
+                if (failed >= 0) {
+                    leaf = guessOrigin(2 * node + 1, failed);
+                } else {
+                    lengths[node] = lengths[2 * node] + lengths[2 * node + 1];
+                    summaries[node] = checker.combine(summaries[2 * node], summaries[2 * node + 1]);
+                }
+            }
+            // Левее начала документа скобок нет: догадка корня, что скобка там что-то закрыла, неверна
+            for (int i = 0; i < summaries[1].guessCount() && leaf < 0; i++) {
+                if (summaries[1].guessCloses(i)) {
+                    leaf = guessOrigin(1, i);
+                }
+            }
+            if (leaf >= 0) {
+                summarize(blocks.get(leaf), prefix(leaf).openings);
+            }
+        }
+    }
+
+    // Блок, в котором сделана догадка index свёртки узла node (см. BracketChecker.combine)
+    private int guessOrigin(int node, int index) {
+        while (node < capacity) {
+            BracketSummary left = summaries[2 * node];
+            if (index < left.guessCount()) {
+                node = 2 * node;
+                continue;
+            }
+            // Из правой половины в узел попадают только догадки, ушедшие левее левой половины
+            BracketSummary right = summaries[2 * node + 1];
+            int skip = index - left.guessCount();
+            index = 0;
+            while (right.guessLevel(index) < left.openings.size() || skip-- > 0) {
+                index++;
+            }
+            node = 2 * node + 1;
+        }
+        return node - capacity;
+    }
+
+    // Свёртка текста перед блоком index
+    private BracketSummary prefix(int index) {
+        List<BracketSummary> parts = new ArrayList<>();
+        for (int node = capacity + index; node > 1; node >>>= 1) {
+            if ((node & 1) == 1) {
+                parts.add(summaries[node - 1]);
+            }
+        }
+        BracketSummary summary = empty;
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            summary = checker.combine(summary, parts.get(i));
+        }
+        return summary;
+    }
+
+    /**
+     * Переводит позиции символов, ждущих в буфере сканера после участка со свёрткой summary,
+     * в отсчёт от начала следующего участка. Столбец символа на строке, начатой до участка,
+     * здесь неизвестен (см. {@link #resolveColumns}).
+     */
+    private static DelimiterScanner.State nextFrame(DelimiterScanner.State state, BracketSummary summary) {
+        int count = state.chars.length;
+        if (count == 0) {
+            return state;
+        }
+        long[] positions = new long[count];
+        long[] byteOffsets = new long[count];
+        long[] lines = new long[count];
+        long[] columns = new long[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = state.positions[i] - summary.chars;
+            byteOffsets[i] = state.byteOffsets[i] - summary.bytes;
+            lines[i] = state.lines[i] - summary.newlines;
+            if (lines[i] == 0) {
+                columns[i] = state.columns[i] - summary.tailColumns;
+            } else {
+                columns[i] = state.lines[i] == 0 ? BracketSummary.UNKNOWN_COLUMN : state.columns[i];
+            }
+        }
+        return state.withPositions(positions, byteOffsets, lines, columns);
+    }
+
+    // Свёртка, в которой неизвестные столбцы позиций, попадающих в результат, найдены по тексту
+    private BracketSummary resolveColumns(BracketSummary summary) {
+        BracketStack closings = summary.closings;
+        BracketStack openings = summary.openings;
+        if (summary.errorColumn != BracketSummary.UNKNOWN_COLUMN
+                && summary.openingColumn != BracketSummary.UNKNOWN_COLUMN
+                && (closings.isEmpty() || closings.column(0) != BracketSummary.UNKNOWN_COLUMN)
+                && (openings.isEmpty() || openings.column(openings.top()) != BracketSummary.UNKNOWN_COLUMN)) {
+            return summary;
+        }
+
+        BracketSummary resolved = new BracketSummary();
+        resolved.setError(summary.errorKind, summary.errorToken, summary.errorPosition, summary.errorByteOffset,
+                summary.errorLine, columnAt(summary.errorPosition, summary.errorColumn));
+        resolved.setOpening(summary.openingPair, summary.openingPosition, summary.openingByteOffset,
+                summary.openingLine, columnAt(summary.openingPosition, summary.openingColumn));
+        if (!closings.isEmpty()) {
+            resolved.closings.push(closings.bracket(0), closings.position(0), closings.byteOffset(0),
+                    closings.line(0), columnAt(closings.position(0), closings.column(0)));
+        }
+        if (!openings.isEmpty()) {
+            int top = openings.top();
+            resolved.openings.push(openings.bracket(top), openings.position(top), openings.byteOffset(top),
+                    openings.line(top), columnAt(openings.position(top), openings.column(top)));
+        }
+        return resolved;
+    }
+
+    // Столбец символа в позиции position, если он неизвестен: символов от начала строки
+    private long columnAt(long position, long column) {
+        if (column != BracketSummary.UNKNOWN_COLUMN) {
+            return column;
+        }
+        int index = findBlock(position);
+        int end = (int) (position - blockStart(index));
+        long result = 0;
+        while (true) {
+            StringBuilder text = blocks.get(index).text;
+            for (int i = end - 1; i >= 0; i--, result++) {
+                if (text.charAt(i) == '\n') {
+                    return result;
+                }
+            }
+            if (index == 0) {
+                return result;
+            }
+            index--;
+            end = blocks.get(index).text.length();
+        }
+    }
+
+    // Перестраивает дерево по блокам; свёртки блоков не пересчитываются
+    private void rebuild() {
+        capacity = Integer.highestOneBit(Math.max(1, blocks.size() - 1)) << 1;
+        summaries = new BracketSummary[2 * capacity];
+        lengths = new long[2 * capacity];
+        emptyBlocks = 0;
+        for (int i = 0; i < capacity; i++) {
+            int node = capacity + i;
+            Block block = i < blocks.size() ? blocks.get(i) : null;
+            if (block != null) {
+                lengths[node] = block.text.length();
+                if (block.text.length() == 0) {
+                    emptyBlocks++;
+                }
+            }
+            summaries[node] = block != null && block.summary != null ? block.summary : empty;
+        }
+        for (int node = capacity - 1; node > 0; node--) {
+            lengths[node] = lengths[2 * node] + lengths[2 * node + 1];
+            summaries[node] = checker.combine(summaries[2 * node], summaries[2 * node + 1]);
+        }
+    }
+
+    // Блок, содержащий смещение; смещение конца документа относится к последнему блоку
+    private int findBlock(long offset) {
+        int node = 1;
+        while (node < capacity) {
+            if (offset < lengths[2 * node]) {
+                node = 2 * node;
+            } else {
+                offset -= lengths[2 * node];
+                node = 2 * node + 1;
+            }
+        }
+        return Math.min(node - capacity, blocks.size() - 1);
+    }
+
+    private long blockStart(int index) {
+        long start = 0;
+        for (int node = capacity + index; node > 1; node >>>= 1) {
+            if ((node & 1) == 1) {
+                start += lengths[node - 1];
+            }
+        }
+        return start;
+    }
+
+    // Режет текст на новые блоки по BLOCK_SIZE символов; свёртки и состояния задаёт вызывающий
+    private static List<Block> split(CharSequence text) {
+        List<Block> parts = new ArrayList<>();
+        for (int start = 0; start < text.length(); start += BLOCK_SIZE) {
+            int end = Math.min(text.length(), start + BLOCK_SIZE);
+            parts.add(new Block(new StringBuilder(text.subSequence(start, end))));
+        }
+        if (parts.isEmpty()) {
+            parts.add(new Block(new StringBuilder()));
+        }
+        return parts;
+    }
+
+    /**
+     * Блок текста, его свёртка и состояние сканера на входе в блок (позиции символов в буфере
+     * сканера — в отсчёте от начала блока).
+     */
+    private static final class Block {
+        final StringBuilder text;
+        BracketSummary summary;
+        DelimiterScanner.State entry;
+
+        Block(StringBuilder text) {
+            this.text = text;
+        }
+    }
+}
@@ -1,18 +1,51 @@
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class Main {
+    private static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    // Использование: java Main [<config.json> <файл или каталог> [<макс. открытых файлов>]]
     public static void main(String[] args) {
 
         String configFile = "C:\\Users\\User\\source\\java_lab\\javalab1\\src\\config.json";
         String fileToCheck = "C:\\Users\\User\\source\\java_lab\\javalab1\\src\\input.txt";
+        int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+
+        if (args.length >= 2) {
+            configFile = args[0];
+            fileToCheck = args[1];
+        }
+        if (args.length >= 3) {
+            maxOpenFiles = Integer.parseInt(args[2]);
+        }
 
         try {
             BracketChecker checker = new BracketChecker(configFile);
-            checker.checkFile(fileToCheck);
+            Path target = Paths.get(fileToCheck);
+            if (Files.isDirectory(target)) {
+                checkDirectory(checker, target, maxOpenFiles);
+            } else {
+                checker.checkFile(fileToCheck);
+            }
         } catch (IOException e) {
             System.err.println("Ошибка при чтении файла: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.err.println("Проверка прервана");
         } catch (Exception e) {
             System.err.println("Ошибка: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static void checkDirectory(BracketChecker checker, Path directory, int maxOpenFiles)
+            throws IOException, InterruptedException {
+        BracketBatchReport report = new BracketBatchChecker(checker, maxOpenFiles).checkDirectory(directory);
+        for (BracketCheckResult result : report.getResults()) {
+            if (!result.isValid()) {
+                System.out.println(result);
+            }
+        }
+        System.out.println(report);
+    }
+}
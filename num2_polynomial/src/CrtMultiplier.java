@@ -0,0 +1,245 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Точное умножение полиномов с целыми коэффициентами через несколько простых модулей:
+ * произведение считается теоретико-числовым преобразованием по каждому модулю отдельно
+ * (задачи на ForkJoinPool), затем коэффициенты восстанавливаются по китайской теореме
+ * об остатках методом Гарнера. Число модулей подбирается по оценке модуля коэффициентов
+ * результата min(n, m) * max|a| * max|b|.
+ */
+public final class CrtMultiplier {
+    // Простые вида c * 2^k + 1 меньше 2^31; в комментарии — разложение, наибольшая длина
+    // преобразования по модулю — 2^k
+    private static final long[] PRIMES = {
+            998244353,  // 119 * 2^23 + 1
+            167772161,  // 5 * 2^25 + 1
+            469762049,  // 7 * 2^26 + 1
+            754974721,  // 45 * 2^24 + 1
+            1004535809, // 479 * 2^21 + 1
+            2013265921, // 15 * 2^27 + 1
+            1811939329, // 27 * 2^26 + 1
+            2113929217  // 63 * 2^25 + 1
+    };
+
+    private final ForkJoinPool pool;
+
+    public CrtMultiplier() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public CrtMultiplier(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Точное произведение; ArithmeticException, если коэффициенты результата
+     * могут не поместиться в long.
+     */
+    public long[] multiply(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return new long[0];
+        }
+        BigInteger bound = bound(a, b);
+        if (bound.bitLength() >= Long.SIZE) {
+            throw new ArithmeticException("Product coefficients may overflow long, bound " + bound);
+        }
+        Residues residues = residues(a, b, bound);
+        long[] primes = residues.primes;
+        int count = primes.length;
+
+        // Произведения префиксов модулей по модулю 2^64: значение собирается в long с переполнением,
+        // и раз итог заведомо помещается в long, остаток по 2^64 и есть точный ответ
+        long[] prefix = new long[count];
+        long product = 1;
+        for (int i = 0; i < count; i++) {
+            prefix[i] = product;
+            product *= primes[i];
+        }
+        long modulus = product;
+
+        long[] result = new long[residues.length];
+        long[] digits = new long[count];
+        for (int k = 0; k < result.length; k++) {
+            garner(residues, k, digits);
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                value += digits[i] * prefix[i];
+            }
+            result[k] = residues.negative(digits) ? value - modulus : value;
+        }
+        return result;
+    }
+
+    /**
+     * Точное произведение без ограничения на размер коэффициентов.
+     */
+    public BigInteger[] multiplyToBigIntegers(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return new BigInteger[0];
+        }
+        Residues residues = residues(a, b, bound(a, b));
+        long[] primes = residues.primes;
+        int count = primes.length;
+
+        BigInteger[] prefix = new BigInteger[count];
+        BigInteger product = BigInteger.ONE;
+        for (int i = 0; i < count; i++) {
+            prefix[i] = product;
+            product = product.multiply(BigInteger.valueOf(primes[i]));
+        }
+
+        BigInteger[] result = new BigInteger[residues.length];
+        long[] digits = new long[count];
+        for (int k = 0; k < result.length; k++) {
+            garner(residues, k, digits);
+            BigInteger value = BigInteger.ZERO;
+            for (int i = count - 1; i >= 0; i--) {
+                value = value.add(prefix[i].multiply(BigInteger.valueOf(digits[i])));
+            }
+            result[k] = residues.negative(digits) ? value.subtract(product) : value;
+        }
+        return result;
+    }
+
+    // Оценка сверху модуля коэффициентов произведения
+    private static BigInteger bound(long[] a, long[] b) {
+        return BigInteger.valueOf(Math.min(a.length, b.length))
+                .multiply(maxAbs(a))
+                .multiply(maxAbs(b));
+    }
+
+    private static BigInteger maxAbs(long[] values) {
+        long max = 0;
+        boolean minValue = false;
+        for (long value : values) {
+            if (value == Long.MIN_VALUE) {
+                minValue = true;
+            } else {
+                max = Math.max(max, Math.abs(value));
+            }
+        }
+        return minValue ? BigInteger.ONE.shiftLeft(63) : BigInteger.valueOf(max);
+    }
+
+    // Подбирает модули, пока их произведение не превысит 2 * bound, и считает произведения параллельно
+    private Residues residues(long[] a, long[] b, BigInteger bound) {
+        int resultLength = a.length + b.length - 1;
+        long transformLength = Long.highestOneBit(resultLength);
+        if (transformLength < resultLength) {
+            transformLength <<= 1;
+        }
+
+        List<Long> chosen = new ArrayList<>();
+        BigInteger product = BigInteger.ONE;
+        BigInteger required = bound.shiftLeft(1);
+        for (long prime : PRIMES) {
+            if (product.compareTo(required) > 0) {
+                break;
+            }
+            if (NumberTheoreticTransform.maxLength(prime) >= transformLength) {
+                chosen.add(prime);
+                product = product.multiply(BigInteger.valueOf(prime));
+            }
+        }
+        if (product.compareTo(required) <= 0) {
+            throw new ArithmeticException("Not enough NTT primes for length " + resultLength
+                    + " and coefficient bound " + bound);
+        }
+
+        long[] primes = new long[chosen.size()];
+        List<ResidueTask> tasks = new ArrayList<>();
+        for (int i = 0; i < primes.length; i++) {
+            primes[i] = chosen.get(i);
+            tasks.add(new ResidueTask(a, b, primes[i]));
+        }
+        for (ResidueTask task : tasks) {
+            pool.execute(task);
+        }
+        long[][] values = new long[primes.length][];
+        for (int i = 0; i < primes.length; i++) {
+            values[i] = tasks.get(i).join();
+        }
+        return new Residues(primes, values, resultLength, product);
+    }
+
+    // Смешанные цифры Гарнера: значение = digits[0] + digits[1] * p0 + digits[2] * p0 * p1 + ...
+    private static void garner(Residues residues, int k, long[] digits) {
+        long[] primes = residues.primes;
+        for (int i = 0; i < primes.length; i++) {
+            long prime = primes[i];
+            long value = residues.values[i][k];
+            for (int j = 0; j < i; j++) {
+                value = Math.floorMod(value - digits[j], prime) * residues.inverses[j][i] % prime;
+            }
+            digits[i] = value;
+        }
+    }
+
+    private static final class Residues {
+        final long[] primes;
+        final long[][] values;
+        final int length;
+        // inverses[j][i] — обратный к primes[j] по модулю primes[i]
+        final long[][] inverses;
+        // Смешанные цифры (M - 1) / 2: значения больше него считаются отрицательными
+        final long[] halfDigits;
+
+        Residues(long[] primes, long[][] values, int length, BigInteger modulus) {
+            this.primes = primes;
+            this.values = values;
+            this.length = length;
+            inverses = new long[primes.length][primes.length];
+            for (int j = 0; j < primes.length; j++) {
+                for (int i = j + 1; i < primes.length; i++) {
+                    inverses[j][i] = NumberTheoreticTransform.inverse(primes[j] % primes[i], primes[i]);
+                }
+            }
+            halfDigits = new long[primes.length];
+            BigInteger half = modulus.subtract(BigInteger.ONE).shiftRight(1);
+            for (int i = 0; i < primes.length; i++) {
+                BigInteger[] divided = half.divideAndRemainder(BigInteger.valueOf(primes[i]));
+                halfDigits[i] = divided[1].longValueExact();
+                half = divided[0];
+            }
+        }
+
+        // Сравнение смешанных цифр со старших
+        boolean negative(long[] digits) {
+            for (int i = primes.length - 1; i >= 0; i--) {
+                if (digits[i] != halfDigits[i]) {
+                    return digits[i] > halfDigits[i];
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class ResidueTask extends RecursiveTask<long[]> {
+        private final long[] a;
+        private final long[] b;
+        private final long prime;
+
+        ResidueTask(long[] a, long[] b, long prime) {
+            this.a = a;
+            this.b = b;
+            this.prime = prime;
+        }
+
+        @Override
+        protected long[] compute() {
+            return NumberTheoreticTransform.multiply(reduce(a), reduce(b), prime);
+        }
+
+        private long[] reduce(long[] values) {
+            long[] result = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = Math.floorMod(values[i], prime);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+/**
+ * Деление плотных полиномов с остатком: dividend = quotient * divisor + remainder,
+ * степень остатка меньше степени делителя. Коэффициенты — массивы по возрастанию степеней,
+ * старший коэффициент делителя ненулевой.
+ *
+ * Малые степени делятся столбиком на месте в копии делимого, большие — через обращение
+ * перевёрнутого делителя как степенного ряда итерациями Ньютона и быстрое умножение
+ * Convolution; точность второго пути ограничена точностью БПФ-умножения. Для делителя
+ * с корнями внутри единичного круга и степени 10^5 частное расходится с точным на ~1e-12;
+ * делитель с корнями вне круга плохо обусловлен, и тогда ошибка растёт у обоих путей.
+ */
+final class DenseDivision {
+    // Ньютон выгоднее столбика, когда и длина частного, и число ненулевых членов делителя
+    // не меньше этого порога (столбик обходит только ненулевые члены делителя)
+    static final int NEWTON_THRESHOLD = 2048;
+
+    private DenseDivision() {
+    }
+
+    /**
+     * Возвращает {частное, остаток}; остаток длины divisor.length - 1 (может содержать нули сверху).
+     */
+    static double[][] divide(double[] dividend, double[] divisor) {
+        int quotientLength = dividend.length - divisor.length + 1;
+        if (quotientLength <= 0) {
+            return new double[][]{new double[0], dividend.clone()};
+        }
+        int nonZero = 0;
+        for (double coefficient : divisor) {
+            if (coefficient != 0.0) {
+                nonZero++;
+            }
+        }
+        if (Math.min(quotientLength, nonZero) < NEWTON_THRESHOLD) {
+            return longDivision(dividend, divisor);
+        }
+        return newtonDivision(dividend, divisor);
+    }
+
+    static double[][] longDivision(double[] dividend, double[] divisor) {
+        int divisorDegree = divisor.length - 1;
+        double leading = divisor[divisorDegree];
+        // Ненулевые младшие члены делителя: разреженный делитель обходится быстрее
+        int[] nonZero = new int[divisorDegree];
+        int count = 0;
+        for (int j = 0; j < divisorDegree; j++) {
+            if (divisor[j] != 0.0) {
+                nonZero[count++] = j;
+            }
+        }
+
+        double[] remainder = dividend.clone();
+        double[] quotient = new double[dividend.length - divisorDegree];
+        for (int k = dividend.length - 1; k >= divisorDegree; k--) {
+            double coefficient = remainder[k] / leading;
+            remainder[k] = 0.0;
+            if (coefficient == 0.0) {
+                continue;
+            }
+            int shift = k - divisorDegree;
+            quotient[shift] = coefficient;
+            for (int i = 0; i < count; i++) {
+                int j = nonZero[i];
+                remainder[shift + j] -= coefficient * divisor[j];
+            }
+        }
+        return new double[][]{quotient, Arrays.copyOf(remainder, divisorDegree)};
+    }
+
+    static double[][] newtonDivision(double[] dividend, double[] divisor) {
+        int divisorDegree = divisor.length - 1;
+        int quotientLength = dividend.length - divisorDegree;
+
+        // rev(q) = rev(dividend) * rev(divisor)^-1 mod x^quotientLength
+        double[] reversedDividend = new double[quotientLength];
+        for (int i = 0; i < quotientLength; i++) {
+            reversedDividend[i] = dividend[dividend.length - 1 - i];
+        }
+        double[] reversedDivisor = new double[Math.min(divisor.length, quotientLength)];
+        for (int i = 0; i < reversedDivisor.length; i++) {
+            reversedDivisor[i] = divisor[divisorDegree - i];
+        }
+        double[] inverse = inverseSeries(reversedDivisor, quotientLength);
+        double[] reversedQuotient = multiplyTruncated(reversedDividend, inverse, quotientLength);
+
+        double[] quotient = new double[quotientLength];
+        for (int i = 0; i < quotientLength; i++) {
+            quotient[i] = reversedQuotient[quotientLength - 1 - i];
+        }
+
+        // Остаток — младшие divisorDegree коэффициентов dividend - divisor * quotient
+        double[] product = multiplyTruncated(divisor, quotient, divisorDegree);
+        double[] remainder = new double[divisorDegree];
+        for (int i = 0; i < divisorDegree; i++) {
+            remainder[i] = dividend[i] - product[i];
+        }
+        return new double[][]{quotient, remainder};
+    }
+
+    /**
+     * Первые length коэффициентов ряда 1 / series; series[0] ненулевой.
+     * Каждая итерация удваивает число верных коэффициентов: g' = g - x^l * (g * d mod x^l),
+     * где x^l * d — невязка series * g - 1.
+     */
+    static double[] inverseSeries(double[] series, int length) {
+        double[] inverse = {1.0 / series[0]};
+        int known = 1;
+        while (known < length) {
+            int next = Math.min(2 * known, length);
+            double[] residual = multiplyTruncated(series, inverse, next);
+            double[] correction = multiplyTruncated(inverse,
+                    Arrays.copyOfRange(residual, known, next), next - known);
+            inverse = Arrays.copyOf(inverse, next);
+            for (int i = known; i < next; i++) {
+                inverse[i] = -correction[i - known];
+            }
+            known = next;
+        }
+        return inverse;
+    }
+
+    // Первые length коэффициентов произведения
+    private static double[] multiplyTruncated(double[] a, double[] b, int length) {
+        double[] left = a.length > length ? Arrays.copyOf(a, length) : a;
+        double[] right = b.length > length ? Arrays.copyOf(b, length) : b;
+        return Arrays.copyOf(Convolution.multiply(left, right), length);
+    }
+}
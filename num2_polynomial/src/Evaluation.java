@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Вычисление значений плотного полинома (coefficients[i] — коэффициент при x^i) в точках.
+ *
+ * Пакетная схема Горнера идёт блоками по BLOCK точек: для каждого коэффициента внутренний
+ * цикл обновляет весь блок, такой цикл без зависимостей между итерациями JIT векторизует
+ * сам (Vector API в JDK 21 только инкубаторный модуль). Порядок операций тот же, что у
+ * поточечной схемы Горнера, поэтому результаты совпадают побитно.
+ */
+final class Evaluation {
+    static final int BLOCK = 256;
+    // Пакет делится между потоками, когда число умножений (точки × коэффициенты) не меньше порога
+    static final long PARALLEL_WORK = 1L << 22;
+    // Дерево подпроизведений спускается до групп такого размера, дальше — схема Горнера
+    static final int TREE_LEAF = 64;
+    // Наибольший допустимый модуль коэффициента произведения в узле дерева (теряется до 16 бит)
+    static final double STABLE_BOUND = 1 << 16;
+
+    private Evaluation() {
+    }
+
+    static double horner(double[] coefficients, int degree, double x) {
+        double result = coefficients[degree];
+        for (int i = degree - 1; i >= 0; i--) {
+            result = result * x + coefficients[i];
+        }
+        return result;
+    }
+
+    static void horner(double[] coefficients, int degree, double[] xs, double[] out, int from, int to) {
+        // Когда xs и out — один массив, out затирает точки блока раньше, чем они перестают быть
+        // нужны, поэтому точки блока сначала копируются
+        double[] points = xs == out ? new double[BLOCK] : xs;
+        for (int start = from; start < to; start += BLOCK) {
+            int end = Math.min(start + BLOCK, to);
+            int shift = 0;
+            if (points != xs) {
+                System.arraycopy(xs, start, points, 0, end - start);
+                shift = start;
+            }
+            double top = coefficients[degree];
+            for (int j = start; j < end; j++) {
+                out[j] = top;
+            }
+            for (int i = degree - 1; i >= 0; i--) {
+                double coefficient = coefficients[i];
+                for (int j = start; j < end; j++) {
+                    out[j] = out[j] * points[j - shift] + coefficient;
+                }
+            }
+        }
+    }
+
+    static void evaluate(double[] coefficients, int degree, double[] xs, double[] out) {
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        if (parallelism > 1 && xs.length > BLOCK && (long) xs.length * (degree + 1) >= PARALLEL_WORK) {
+            ForkJoinPool.commonPool().invoke(new HornerTask(coefficients, degree, xs, out, 0, xs.length));
+        } else {
+            horner(coefficients, degree, xs, out, 0, xs.length);
+        }
+    }
+
+    /**
+     * Многоточечное вычисление через дерево подпроизведений: остаток от деления на
+     * произведение (x - xs[i]) по половинам точек спускается вниз, в листьях — схема Горнера
+     * для остатка степени меньше TREE_LEAF. Выгодно, когда степень сравнима с числом точек.
+     *
+     * В double метод плохо обусловлен: коэффициенты произведения растут вплоть до 2^n,
+     * и остаток с такими коэффициентами теряет точность в точках. Поэтому деление делается
+     * только на узлах, у которых коэффициенты произведения не больше STABLE_BOUND; остальные
+     * узлы пропускаются, и в худшем случае каждая точка считается схемой Горнера по исходному
+     * полиному. Для точек, разбросанных по [-1, 1], так и выходит, выигрыш есть у тесно
+     * сгруппированных точек (например, |x| <= 0.05).
+     */
+    static void subproductTree(double[] coefficients, int degree, double[] xs, double[] out) {
+        if (xs.length == 0) {
+            return;
+        }
+        Node root = buildTree(xs, 0, xs.length);
+        double[] polynomial = Arrays.copyOf(coefficients, degree + 1);
+        descend(root, polynomial, xs, out);
+    }
+
+    private static Node buildTree(double[] xs, int from, int to) {
+        if (to - from <= TREE_LEAF) {
+            // Произведение (x - xs[i]) по группе, коэффициенты по возрастанию степеней
+            double[] product = new double[to - from + 1];
+            product[0] = 1.0;
+            int length = 1;
+            for (int i = from; i < to; i++) {
+                for (int k = length; k > 0; k--) {
+                    product[k] = product[k - 1] - xs[i] * product[k];
+                }
+                product[0] = -xs[i] * product[0];
+                length++;
+            }
+            boolean stable = stable(product);
+            return new Node(stable ? product : null, stable, from, to, null, null);
+        }
+        int middle = (from + to) >>> 1;
+        Node left = buildTree(xs, from, middle);
+        Node right = buildTree(xs, middle, to);
+        double[] product = null;
+        if (left.product != null && right.product != null) {
+            product = Convolution.multiply(left.product, right.product);
+            if (!stable(product)) {
+                product = null;
+            }
+        }
+        return new Node(product, product != null || left.reducible || right.reducible, from, to, left, right);
+    }
+
+    private static boolean stable(double[] product) {
+        for (double coefficient : product) {
+            if (!(Math.abs(coefficient) <= STABLE_BOUND)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void descend(Node node, double[] polynomial, double[] xs, double[] out) {
+        if (node.product != null && polynomial.length >= node.product.length) {
+            polynomial = DenseDivision.divide(polynomial, node.product)[1];
+        }
+        if (node.left == null || !node.reducible) {
+            if (polynomial.length == 0) {
+                Arrays.fill(out, node.from, node.to, 0.0);
+            } else {
+                horner(polynomial, polynomial.length - 1, xs, out, node.from, node.to);
+            }
+            return;
+        }
+        descend(node.left, polynomial, xs, out);
+        descend(node.right, polynomial, xs, out);
+    }
+
+    // Узел дерева подпроизведений: произведение (x - xs[i]) для i из [from, to),
+    // null — если оно не строилось или слишком плохо обусловлено для деления;
+    // reducible — есть ли в поддереве хоть один узел, пригодный для деления
+    private record Node(double[] product, boolean reducible, int from, int to, Node left, Node right) {
+    }
+
+    private static class HornerTask extends RecursiveAction {
+        private final double[] coefficients;
+        private final int degree;
+        private final double[] xs;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        HornerTask(double[] coefficients, int degree, double[] xs, double[] out, int from, int to) {
+            this.coefficients = coefficients;
+            this.degree = degree;
+            this.xs = xs;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) (to - from) * (degree + 1) < PARALLEL_WORK / 4 || to - from <= BLOCK) {
+                horner(coefficients, degree, xs, out, from, to);
+                return;
+            }
+            // Граница по блокам, чтобы куски не дробили блоки Горнера
+            int middle = from + ((to - from) / 2 + BLOCK - 1) / BLOCK * BLOCK;
+            invokeAll(new HornerTask(coefficients, degree, xs, out, from, middle),
+                    new HornerTask(coefficients, degree, xs, out, middle, to));
+        }
+    }
+}
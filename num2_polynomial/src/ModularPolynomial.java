@@ -0,0 +1,198 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Неизменяемый полином с коэффициентами в поле вычетов по простому модулю p < 2^31.
+ * Вся арифметика точная, в том числе деление с остатком. Умножение длинных полиномов
+ * идёт через теоретико-числовое преобразование, если модуль его допускает
+ * (p = c * 2^k + 1, например 998244353), иначе — школьным способом.
+ */
+public final class ModularPolynomial {
+    private final long modulus;
+    // coefficients[i] — вычет при x^i в [0, modulus); старший элемент ненулевой
+    private final long[] coefficients;
+
+    /**
+     * Коэффициенты по возрастанию степеней, приводятся по модулю (отрицательные тоже).
+     */
+    public ModularPolynomial(long modulus, long... coefficients) {
+        checkModulus(modulus);
+        long[] reduced = new long[coefficients.length];
+        for (int i = 0; i < coefficients.length; i++) {
+            reduced[i] = Math.floorMod(coefficients[i], modulus);
+        }
+        this.modulus = modulus;
+        this.coefficients = trim(reduced);
+    }
+
+    // Массив уже приведён по модулю; не копируется
+    private ModularPolynomial(long[] reduced, long modulus) {
+        this.modulus = modulus;
+        this.coefficients = trim(reduced);
+    }
+
+    private static void checkModulus(long modulus) {
+        if (modulus < 2 || modulus >= NumberTheoreticTransform.MAX_MODULUS
+                || !BigInteger.valueOf(modulus).isProbablePrime(40)) {
+            throw new IllegalArgumentException("Modulus must be a prime below 2^31: " + modulus);
+        }
+    }
+
+    private static long[] trim(long[] values) {
+        int length = values.length;
+        while (length > 0 && values[length - 1] == 0) {
+            length--;
+        }
+        return length == values.length ? values : Arrays.copyOf(values, length);
+    }
+
+    public long getModulus() {
+        return modulus;
+    }
+
+    public long getCoefficient(int power) {
+        return power >= 0 && power < coefficients.length ? coefficients[power] : 0;
+    }
+
+    public int degree() {
+        return coefficients.length - 1;
+    }
+
+    public boolean isZero() {
+        return coefficients.length == 0;
+    }
+
+    public ModularPolynomial add(ModularPolynomial other) {
+        checkSameModulus(other);
+        long[] result = Arrays.copyOf(coefficients, Math.max(coefficients.length, other.coefficients.length));
+        for (int i = 0; i < other.coefficients.length; i++) {
+            long sum = result[i] + other.coefficients[i];
+            result[i] = sum >= modulus ? sum - modulus : sum;
+        }
+        return new ModularPolynomial(result, modulus);
+    }
+
+    public ModularPolynomial subtract(ModularPolynomial other) {
+        checkSameModulus(other);
+        long[] result = Arrays.copyOf(coefficients, Math.max(coefficients.length, other.coefficients.length));
+        for (int i = 0; i < other.coefficients.length; i++) {
+            long difference = result[i] - other.coefficients[i];
+            result[i] = difference < 0 ? difference + modulus : difference;
+        }
+        return new ModularPolynomial(result, modulus);
+    }
+
+    public ModularPolynomial multiply(ModularPolynomial other) {
+        checkSameModulus(other);
+        if (isZero() || other.isZero()) {
+            return new ModularPolynomial(new long[0], modulus);
+        }
+        return new ModularPolynomial(
+                NumberTheoreticTransform.multiply(coefficients, other.coefficients, modulus), modulus);
+    }
+
+    public ModularPolynomial multiply(long scalar) {
+        long factor = Math.floorMod(scalar, modulus);
+        long[] result = new long[coefficients.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = coefficients[i] * factor % modulus;
+        }
+        return new ModularPolynomial(result, modulus);
+    }
+
+    /**
+     * Деление с остатком: {частное, остаток}, степень остатка меньше степени делителя.
+     */
+    public ModularPolynomial[] divide(ModularPolynomial divisor) {
+        checkSameModulus(divisor);
+        if (divisor.isZero()) {
+            throw new ArithmeticException("Division by zero polynomial");
+        }
+        int divisorDegree = divisor.degree();
+        if (coefficients.length <= divisorDegree) {
+            return new ModularPolynomial[]{new ModularPolynomial(new long[0], modulus), this};
+        }
+
+        long[] remainder = coefficients.clone();
+        long[] quotient = new long[coefficients.length - divisorDegree];
+        long leadingInverse = NumberTheoreticTransform.inverse(divisor.coefficients[divisorDegree], modulus);
+        for (int k = remainder.length - 1; k >= divisorDegree; k--) {
+            long coefficient = remainder[k] * leadingInverse % modulus;
+            remainder[k] = 0;
+            if (coefficient == 0) {
+                continue;
+            }
+            int shift = k - divisorDegree;
+            quotient[shift] = coefficient;
+            for (int j = 0; j < divisorDegree; j++) {
+                long value = remainder[shift + j] - coefficient * divisor.coefficients[j] % modulus;
+                remainder[shift + j] = value < 0 ? value + modulus : value;
+            }
+        }
+        return new ModularPolynomial[]{
+                new ModularPolynomial(quotient, modulus),
+                new ModularPolynomial(Arrays.copyOf(remainder, divisorDegree), modulus)};
+    }
+
+    public ModularPolynomial mod(ModularPolynomial divisor) {
+        return divide(divisor)[1];
+    }
+
+    public long evaluate(long x) {
+        long point = Math.floorMod(x, modulus);
+        long result = 0;
+        for (int i = coefficients.length - 1; i >= 0; i--) {
+            result = (result * point + coefficients[i]) % modulus;
+        }
+        return result;
+    }
+
+    private void checkSameModulus(ModularPolynomial other) {
+        if (other.modulus != modulus) {
+            throw new IllegalArgumentException("Different moduli: " + modulus + " and " + other.modulus);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        ModularPolynomial other = (ModularPolynomial) obj;
+        return modulus == other.modulus && Arrays.equals(coefficients, other.coefficients);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(modulus) + Arrays.hashCode(coefficients);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int power = coefficients.length - 1; power >= 0; power--) {
+            long coefficient = coefficients[power];
+            if (coefficient == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(" + ");
+            }
+            if (power == 0 || coefficient != 1) {
+                sb.append(coefficient);
+                if (power != 0) {
+                    sb.append("*");
+                }
+            }
+            if (power != 0) {
+                sb.append("x");
+                if (power != 1) {
+                    sb.append("^").append(power);
+                }
+            }
+        }
+        if (sb.length() == 0) {
+            sb.append("0");
+        }
+        return sb.append(" (mod ").append(modulus).append(")").toString();
+    }
+}
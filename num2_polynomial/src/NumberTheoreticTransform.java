@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Теоретико-числовое преобразование (БПФ в поле вычетов по простому модулю p < 2^31)
+ * и свёртка на нём. Длина преобразования — степень двойки, делящая p - 1, поэтому
+ * для модуля вида c * 2^k + 1 свёртка возможна до длины 2^k; для остальных модулей
+ * и коротких множителей используется школьное умножение.
+ *
+ * Произведения вычетов меньше 2^62 и помещаются в long без переполнения.
+ */
+final class NumberTheoreticTransform {
+    static final long MAX_MODULUS = 1L << 31;
+    // Короче этого школьное умножение быстрее преобразования
+    static final int THRESHOLD = 64;
+
+    private NumberTheoreticTransform() {
+    }
+
+    static long[] multiply(long[] a, long[] b, long modulus) {
+        int resultLength = a.length + b.length - 1;
+        int length = Integer.highestOneBit(resultLength);
+        if (length < resultLength) {
+            length <<= 1;
+        }
+        if (Math.min(a.length, b.length) < THRESHOLD || length > maxLength(modulus)) {
+            return schoolbook(a, b, modulus);
+        }
+
+        long root = rootOfUnity(modulus, length);
+        long[] fa = new long[length];
+        long[] fb = new long[length];
+        System.arraycopy(a, 0, fa, 0, a.length);
+        System.arraycopy(b, 0, fb, 0, b.length);
+        long[] roots = powers(root, length / 2, modulus);
+        transform(fa, roots, modulus);
+        transform(fb, roots, modulus);
+        for (int i = 0; i < length; i++) {
+            fa[i] = fa[i] * fb[i] % modulus;
+        }
+
+        // Обратное преобразование — прямое с обратным корнем и делением на длину
+        long[] inverseRoots = powers(inverse(root, modulus), length / 2, modulus);
+        transform(fa, inverseRoots, modulus);
+        long scale = inverse(length, modulus);
+        long[] result = new long[resultLength];
+        for (int i = 0; i < resultLength; i++) {
+            result[i] = fa[i] * scale % modulus;
+        }
+        return result;
+    }
+
+    static long[] schoolbook(long[] a, long[] b, long modulus) {
+        long[] result = new long[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            long value = a[i];
+            if (value == 0) {
+                continue;
+            }
+            for (int j = 0; j < b.length; j++) {
+                result[i + j] = (result[i + j] + value * b[j]) % modulus;
+            }
+        }
+        return result;
+    }
+
+    // Наибольшая длина преобразования для модуля: наибольшая степень двойки, делящая p - 1
+    static long maxLength(long modulus) {
+        return Long.lowestOneBit(modulus - 1);
+    }
+
+    /**
+     * Первообразный корень степени length из единицы по модулю: g^((p - 1) / length),
+     * где g — порождающий элемент мультипликативной группы.
+     */
+    static long rootOfUnity(long modulus, int length) {
+        return power(primitiveRoot(modulus), (modulus - 1) / length, modulus);
+    }
+
+    // Наименьший порождающий элемент: g^((p - 1) / q) != 1 для всех простых делителей q числа p - 1
+    static long primitiveRoot(long modulus) {
+        List<Long> factors = primeFactors(modulus - 1);
+        for (long candidate = 2; candidate < modulus; candidate++) {
+            boolean generator = true;
+            for (long factor : factors) {
+                if (power(candidate, (modulus - 1) / factor, modulus) == 1) {
+                    generator = false;
+                    break;
+                }
+            }
+            if (generator) {
+                return candidate;
+            }
+        }
+        return 1;
+    }
+
+    private static List<Long> primeFactors(long value) {
+        List<Long> factors = new ArrayList<>();
+        for (long factor = 2; factor * factor <= value; factor++) {
+            if (value % factor == 0) {
+                factors.add(factor);
+                while (value % factor == 0) {
+                    value /= factor;
+                }
+            }
+        }
+        if (value > 1) {
+            factors.add(value);
+        }
+        return factors;
+    }
+
+    static long power(long base, long exponent, long modulus) {
+        long result = 1;
+        base %= modulus;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = result * base % modulus;
+            }
+            base = base * base % modulus;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    // Обратный по простому модулю через малую теорему Ферма
+    static long inverse(long value, long modulus) {
+        return power(value, modulus - 2, modulus);
+    }
+
+    private static long[] powers(long root, int count, long modulus) {
+        long[] result = new long[count];
+        long value = 1;
+        for (int i = 0; i < count; i++) {
+            result[i] = value;
+            value = value * root % modulus;
+        }
+        return result;
+    }
+
+    // Итеративное преобразование на месте; roots[k] = w^k для корня w степени a.length
+    private static void transform(long[] a, long[] roots, long modulus) {
+        int n = a.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                long t = a[i];
+                a[i] = a[j];
+                a[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= n; length <<= 1) {
+            int half = length >> 1;
+            int step = n / length;
+            for (int start = 0; start < n; start += length) {
+                for (int k = 0; k < half; k++) {
+                    int p = start + k;
+                    int q = p + half;
+                    long x = a[q] * roots[k * step] % modulus;
+                    long y = a[p];
+                    a[p] = y + x >= modulus ? y + x - modulus : y + x;
+                    a[q] = y - x < 0 ? y - x + modulus : y - x;
+                }
+            }
+        }
+    }
+}
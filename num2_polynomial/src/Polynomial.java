@@ -1,81 +1,294 @@
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.Objects;
 
-public class Polynomial implements Comparable<Polynomial>, Cloneable {
-    private final HashMap<Integer, Double> coefficients;
+/**
+ * Полином с коэффициентами double. Хранится в одном из двух представлений:
+ * плотном (dense[i] — коэффициент при x^i) или разреженном (степени по возрастанию
+ * в powers и коэффициенты в values). Представление выбирается по заполненности
+ * при создании; отрицательные степени хранятся только разреженно.
+ *
+ * Полином неизменяем; для пошаговой сборки и накопления сумм есть {@link PolynomialBuilder}.
+ * Степень и число ненулевых членов хранятся в полях, хэш и упорядоченный список членов
+ * плотного полинома считаются лениво и кэшируются.
+ */
+public final class Polynomial implements Comparable<Polynomial>, Cloneable {
+    // Ниже этой степени плотное представление выгодно при любой заполненности
+    private static final int SMALL_DEGREE = 16;
+    // Плотное представление выбирается при заполненности не меньше DENSE_FILL
+    private static final double DENSE_FILL = 0.25;
+
+    private final double[] dense;
+    private final int[] powers;
+    private final double[] values;
+    // Число ненулевых членов
+    private final int terms;
+    // -1 у нулевого полинома
+    private final int degree;
+    // Кэш хэша, как в String: 0 — ещё не посчитан, если hashIsZero == false
+    private int hash;
+    private boolean hashIsZero;
+    // Кэш упорядоченных членов плотного полинома; поля Terms финальные, поэтому публикация
+    // без синхронизации безопасна: другой поток увидит либо null, либо заполненные массивы
+    private Terms sortedTerms;
 
     public Polynomial() {
-        coefficients = new HashMap<>();
+        this(null, new int[0], new double[0], 0, -1);
     }
 
     public Polynomial(HashMap<Integer, Double> coeffs) {
-        this();
+        this(fromMap(coeffs));
+    }
+
+    private Polynomial(Polynomial source) {
+        this(source.dense, source.powers, source.values, source.terms, source.degree);
+    }
+
+    private Polynomial(double[] dense, int[] powers, double[] values, int terms, int degree) {
+        this.dense = dense;
+        this.powers = powers;
+        this.values = values;
+        this.terms = terms;
+        this.degree = degree;
+    }
+
+    private static Polynomial fromMap(HashMap<Integer, Double> coeffs) {
+        int[] sortedPowers = new int[coeffs.size()];
+        double[] sortedValues = new double[coeffs.size()];
+        int count = 0;
         for (Map.Entry<Integer, Double> entry : coeffs.entrySet()) {
             if (entry.getValue() != 0.0) {
-                coefficients.put(entry.getKey(), entry.getValue());
+                sortedPowers[count++] = entry.getKey();
             }
         }
+        Arrays.sort(sortedPowers, 0, count);
+        for (int i = 0; i < count; i++) {
+            sortedValues[i] = coeffs.get(sortedPowers[i]);
+        }
+        return fromSparse(sortedPowers, sortedValues, count);
     }
 
-    public void setCoefficient(int power, double coefficient) {
-        if (coefficient == 0.0) {
-            coefficients.remove(power);
-        } else {
-            coefficients.put(power, coefficient);
+    /**
+     * Полином из плотного массива коэффициентов; массив не копируется и дальше не должен меняться.
+     */
+    static Polynomial fromDense(double[] coefficients) {
+        int top = coefficients.length - 1;
+        while (top >= 0 && coefficients[top] == 0.0) {
+            top--;
+        }
+        int count = 0;
+        for (int i = 0; i <= top; i++) {
+            if (coefficients[i] != 0.0) {
+                count++;
+            } else {
+                // -0.0 от умножения на отрицательное число, иначе equals сравнит массивы неверно
+                coefficients[i] = 0.0;
+            }
         }
-    }
 
-    public double getCoefficient(int power) {
-        return coefficients.getOrDefault(power, 0.0);
+        if (preferDense(count, top, 0)) {
+            return new Polynomial(coefficients, null, null, count, top);
+        }
+        int[] sparsePowers = new int[count];
+        double[] sparseValues = new double[count];
+        int index = 0;
+        for (int i = 0; i <= top; i++) {
+            if (coefficients[i] != 0.0) {
+                sparsePowers[index] = i;
+                sparseValues[index++] = coefficients[i];
+            }
+        }
+        return new Polynomial(null, sparsePowers, sparseValues, count, top);
     }
 
-    public Polynomial add(Polynomial other) {
-        Polynomial result = new Polynomial();
+    /**
+     * Полином из разреженных массивов (степени по возрастанию, без нулевых коэффициентов);
+     * массивы не копируются и дальше не должны меняться.
+     */
+    static Polynomial fromSparse(int[] powers, double[] values, int count) {
+        int degree = count == 0 ? -1 : powers[count - 1];
+        if (count > 0 && preferDense(count, degree, powers[0])) {
+            double[] coefficients = new double[degree + 1];
+            for (int i = 0; i < count; i++) {
+                coefficients[powers[i]] = values[i];
+            }
+            return new Polynomial(coefficients, null, null, count, degree);
+        }
+        return new Polynomial(null, powers, values, count, degree);
+    }
 
-        for (Map.Entry<Integer, Double> entry : this.coefficients.entrySet()) {
-            result.setCoefficient(entry.getKey(), entry.getValue());
+    // Одночлен coefficient * x^power
+    private static Polynomial monomial(int power, double coefficient) {
+        if (coefficient == 0.0) {
+            return new Polynomial();
         }
+        return fromSparse(new int[]{power}, new double[]{coefficient}, 1);
+    }
+
+    private static boolean preferDense(int terms, int degree, int lowestPower) {
+        return lowestPower >= 0 && (degree < SMALL_DEGREE || terms >= (degree + 1) * DENSE_FILL);
+    }
 
-        for (Map.Entry<Integer, Double> entry : other.coefficients.entrySet()) {
-            int power = entry.getKey();
-            double newCoeff = result.getCoefficient(power) + entry.getValue();
-            result.setCoefficient(power, newCoeff);
+    public double getCoefficient(int power) {
+        if (dense != null) {
+            return power >= 0 && power <= degree ? dense[power] : 0.0;
         }
+        int index = Arrays.binarySearch(powers, 0, terms, power);
+        return index >= 0 ? values[index] : 0.0;
+    }
 
-        return result;
+    public Polynomial add(Polynomial other) {
+        return addScaled(other, 1.0);
     }
 
     public Polynomial subtract(Polynomial other) {
-        Polynomial result = new Polynomial();
+        return addScaled(other, -1.0);
+    }
 
-        for (Map.Entry<Integer, Double> entry : this.coefficients.entrySet()) {
-            result.setCoefficient(entry.getKey(), entry.getValue());
+    private Polynomial addScaled(Polynomial other, double factor) {
+        if (dense != null && other.dense != null) {
+            double[] result = new double[Math.max(degree, other.degree) + 1];
+            for (int i = 0; i <= degree; i++) {
+                result[i] = dense[i];
+            }
+            for (int i = 0; i <= other.degree; i++) {
+                result[i] += factor * other.dense[i];
+            }
+            return fromDense(result);
         }
 
-        for (Map.Entry<Integer, Double> entry : other.coefficients.entrySet()) {
-            int power = entry.getKey();
-            double newCoeff = result.getCoefficient(power) - entry.getValue();
-            result.setCoefficient(power, newCoeff);
-        }
+        int[] otherPowers = other.sparsePowers();
+        double[] otherValues = other.sparseValues();
+        int[] thisPowers = sparsePowers();
+        double[] thisValues = sparseValues();
+        int[] resultPowers = new int[terms + other.terms];
+        double[] resultValues = new double[resultPowers.length];
+        int count = merge(thisPowers, thisValues, terms, 1.0, otherPowers, otherValues, other.terms, factor,
+                resultPowers, resultValues);
+        return fromSparse(resultPowers, resultValues, count);
+    }
 
-        return result;
+    /**
+     * Слияние двух отсортированных списков членов с множителями; нулевые суммы отбрасываются.
+     * Возвращает число членов результата.
+     */
+    static int merge(int[] leftPowers, double[] leftValues, int leftCount, double leftFactor,
+                     int[] rightPowers, double[] rightValues, int rightCount, double rightFactor,
+                     int[] resultPowers, double[] resultValues) {
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < leftCount || j < rightCount) {
+            int power;
+            double value;
+            if (j == rightCount || i < leftCount && leftPowers[i] < rightPowers[j]) {
+                power = leftPowers[i];
+                value = leftFactor * leftValues[i++];
+            } else if (i == leftCount || rightPowers[j] < leftPowers[i]) {
+                power = rightPowers[j];
+                value = rightFactor * rightValues[j++];
+            } else {
+                power = leftPowers[i];
+                value = leftFactor * leftValues[i++] + rightFactor * rightValues[j++];
+            }
+            if (value != 0.0) {
+                resultPowers[count] = power;
+                resultValues[count++] = value;
+            }
+        }
+        return count;
     }
 
     public Polynomial multiply(Polynomial other) {
-        Polynomial result = new Polynomial();
+        if (isZero() || other.isZero()) {
+            return new Polynomial();
+        }
 
-        for (Map.Entry<Integer, Double> thisEntry : this.coefficients.entrySet()) {
-            for (Map.Entry<Integer, Double> otherEntry : other.coefficients.entrySet()) {
-                int newPower = thisEntry.getKey() + otherEntry.getKey();
-                double newCoeff = thisEntry.getValue() * otherEntry.getValue();
-                double currentCoeff = result.getCoefficient(newPower);
-                result.setCoefficient(newPower, currentCoeff + newCoeff);
+        if (dense != null && other.dense != null) {
+            return fromDense(Convolution.multiply(denseCoefficients(), other.denseCoefficients()));
+        }
+
+        int[] thisPowers = sparsePowers();
+        double[] thisValues = sparseValues();
+        int[] otherPowers = other.sparsePowers();
+        double[] otherValues = other.sparseValues();
+        long lowest = (long) thisPowers[0] + otherPowers[0];
+        long span = (long) degree + other.degree - lowest + 1;
+
+        // Плотное накопление, если массив результата не намного больше числа произведений
+        if (span <= Integer.MAX_VALUE - 8 && span <= 4L * terms * other.terms) {
+            double[] result = new double[(int) span];
+            for (int i = 0; i < terms; i++) {
+                int offset = (int) (thisPowers[i] - lowest);
+                double value = thisValues[i];
+                for (int j = 0; j < other.terms; j++) {
+                    result[offset + otherPowers[j]] += value * otherValues[j];
+                }
             }
+            return fromOffset(result, (int) lowest);
         }
 
-        return result;
+        // Иначе попарное слияние сдвинутых копий большего множителя, как в сортировке слиянием
+        Polynomial shorter = terms <= other.terms ? this : other;
+        Polynomial longer = shorter == this ? other : this;
+        int[] shortPowers = shorter == this ? thisPowers : otherPowers;
+        double[] shortValues = shorter == this ? thisValues : otherValues;
+        int[] longPowers = shorter == this ? otherPowers : thisPowers;
+        double[] longValues = shorter == this ? otherValues : thisValues;
+
+        int[][] partPowers = new int[shorter.terms][];
+        double[][] partValues = new double[shorter.terms][];
+        int[] partCounts = new int[shorter.terms];
+        for (int i = 0; i < shorter.terms; i++) {
+            partPowers[i] = new int[longer.terms];
+            partValues[i] = new double[longer.terms];
+            int count = 0;
+            for (int j = 0; j < longer.terms; j++) {
+                double value = shortValues[i] * longValues[j];
+                if (value != 0.0) {
+                    partPowers[i][count] = shortPowers[i] + longPowers[j];
+                    partValues[i][count++] = value;
+                }
+            }
+            partCounts[i] = count;
+        }
+        for (int width = 1; width < shorter.terms; width *= 2) {
+            for (int i = 0; i + width < shorter.terms; i += 2 * width) {
+                int j = i + width;
+                int[] mergedPowers = new int[partCounts[i] + partCounts[j]];
+                double[] mergedValues = new double[mergedPowers.length];
+                partCounts[i] = merge(partPowers[i], partValues[i], partCounts[i], 1.0,
+                        partPowers[j], partValues[j], partCounts[j], 1.0, mergedPowers, mergedValues);
+                partPowers[i] = mergedPowers;
+                partValues[i] = mergedValues;
+                partPowers[j] = null;
+                partValues[j] = null;
+            }
+        }
+        return fromSparse(partPowers[0], partValues[0], partCounts[0]);
+    }
+
+    // Полином из массива, где coefficients[i] — коэффициент при x^(lowest + i)
+    static Polynomial fromOffset(double[] coefficients, int lowest) {
+        if (lowest == 0) {
+            return fromDense(coefficients);
+        }
+        int count = 0;
+        for (double coefficient : coefficients) {
+            if (coefficient != 0.0) {
+                count++;
+            }
+        }
+        int[] resultPowers = new int[count];
+        double[] resultValues = new double[count];
+        int index = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] != 0.0) {
+                resultPowers[index] = lowest + i;
+                resultValues[index++] = coefficients[i];
+            }
+        }
+        return fromSparse(resultPowers, resultValues, count);
     }
 
     public Polynomial multiply(double scalar) {
@@ -83,19 +296,53 @@ public class Polynomial implements Comparable<Polynomial>, Cloneable {
             return new Polynomial();
         }
 
-        Polynomial result = new Polynomial();
-        for (Map.Entry<Integer, Double> entry : this.coefficients.entrySet()) {
-            result.setCoefficient(entry.getKey(), entry.getValue() * scalar);
+        if (dense != null) {
+            double[] result = new double[degree + 1];
+            for (int i = 0; i <= degree; i++) {
+                result[i] = dense[i] * scalar;
+            }
+            return fromDense(result);
         }
 
-        return result;
+        int[] resultPowers = new int[terms];
+        double[] resultValues = new double[terms];
+        int count = 0;
+        for (int i = 0; i < terms; i++) {
+            double value = values[i] * scalar;
+            if (value != 0.0) {
+                resultPowers[count] = powers[i];
+                resultValues[count++] = value;
+            }
+        }
+        return fromSparse(resultPowers, resultValues, count);
     }
 
     public Polynomial[] divide(Polynomial divisor) {
         if (divisor.isZero()) {
             throw new ArithmeticException("Division by zero polynomial");
         }
+        if (divisor.lowestPower() < 0) {
+            return divideGeneric(divisor);
+        }
+        if (degree < divisor.degree) {
+            return new Polynomial[]{new Polynomial(), clone()};
+        }
+
+        // Члены делимого с отрицательными степенями делением не затрагиваются и целиком уходят в остаток
+        double[][] parts = DenseDivision.divide(nonNegativeCoefficients(), divisor.nonNegativeCoefficients());
+        Polynomial remainder = fromDense(parts[1]);
+        if (lowestPower() < 0) {
+            int count = 0;
+            while (powers[count] < 0) {
+                count++;
+            }
+            remainder = remainder.add(fromSparse(Arrays.copyOf(powers, count), Arrays.copyOf(values, count), count));
+        }
+        return new Polynomial[]{fromDense(parts[0]), remainder};
+    }
 
+    // Деление столбиком через операции над полиномами; нужно для делителей с отрицательными степенями
+    private Polynomial[] divideGeneric(Polynomial divisor) {
         Polynomial quotient = new Polynomial();
         Polynomial remainder = this.clone();
 
@@ -109,8 +356,7 @@ public class Polynomial implements Comparable<Polynomial>, Cloneable {
             int powerDiff = currentDegree - divisorDegree;
             double coeff = currentLeadingCoeff / divisorLeadingCoeff;
 
-            Polynomial term = new Polynomial();
-            term.setCoefficient(powerDiff, coeff);
+            Polynomial term = monomial(powerDiff, coeff);
 
             quotient = quotient.add(term);
             remainder = remainder.subtract(term.multiply(divisor));
@@ -124,18 +370,161 @@ public class Polynomial implements Comparable<Polynomial>, Cloneable {
         return divisionResult[1];
     }
 
-    public int degree() {
-        if (coefficients.isEmpty()) {
-            return -1;
+    /**
+     * Значение полинома в точке x по схеме Горнера.
+     */
+    public double evaluate(double x) {
+        if (isZero()) {
+            return 0.0;
+        }
+        if (dense != null) {
+            return Evaluation.horner(dense, degree, x);
+        }
+        return evaluateSparse(x);
+    }
+
+    // Схема Горнера по ненулевым членам: пропуски степеней — через возведение x в степень
+    private double evaluateSparse(double x) {
+        double result = values[terms - 1];
+        for (int i = terms - 2; i >= 0; i--) {
+            result = result * pow(x, (long) powers[i + 1] - powers[i]) + values[i];
+        }
+        return powers[0] == 0 ? result : result * pow(x, powers[0]);
+    }
+
+    // Возведение в степень быстрым возведением в квадрат: пропуски степеней обычно малы,
+    // и это заметно дешевле Math.pow
+    static double pow(double x, long power) {
+        if (power < 0) {
+            return 1.0 / pow(x, -power);
+        }
+        double result = 1.0;
+        while (power > 0) {
+            if ((power & 1) != 0) {
+                result *= x;
+            }
+            x *= x;
+            power >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Значения полинома в точках xs записываются в out[0..xs.length); out может быть самим xs.
+     * Память выделяется только в этом случае (буфер на блок точек). Большие пакеты считаются
+     * параллельно на общем ForkJoinPool.
+     */
+    public void evaluate(double[] xs, double[] out) {
+        checkEvaluationArrays(xs, out);
+        if (isZero()) {
+            Arrays.fill(out, 0, xs.length, 0.0);
+        } else if (dense != null) {
+            Evaluation.evaluate(dense, degree, xs, out);
+        } else {
+            for (int i = 0; i < xs.length; i++) {
+                out[i] = evaluateSparse(xs[i]);
+            }
         }
-        return coefficients.keySet().stream().max(Integer::compare).orElse(0);
+    }
+
+    /**
+     * Многоточечное вычисление через дерево подпроизведений за O(n log^2 n) вместо O(n * degree).
+     * Плохо обусловленные узлы дерева пропускаются (см. {@link Evaluation}), поэтому результат
+     * не хуже пакетного {@link #evaluate(double[], double[])}, но выигрыш по времени бывает
+     * только при степени порядка числа точек в десятки тысяч и тесно сгруппированных точках.
+     * Полиномы с отрицательными степенями считаются обычным пакетным способом.
+     */
+    public void evaluateMultipoint(double[] xs, double[] out) {
+        checkEvaluationArrays(xs, out);
+        if (isZero() || lowestPower() < 0) {
+            evaluate(xs, out);
+            return;
+        }
+        Evaluation.subproductTree(nonNegativeCoefficients(), degree, xs, out);
+    }
+
+    private static void checkEvaluationArrays(double[] xs, double[] out) {
+        if (out.length < xs.length) {
+            throw new IllegalArgumentException("Output array is shorter than points array");
+        }
+    }
+
+    public int degree() {
+        return degree;
     }
 
 
     public boolean isZero() {
-        return coefficients.isEmpty();
+        return terms == 0;
+    }
+
+    // Плотные коэффициенты ровно до степени (массив от PolynomialBuilder может быть с запасом)
+    private double[] denseCoefficients() {
+        return dense.length == degree + 1 ? dense : Arrays.copyOf(dense, degree + 1);
+    }
+
+    // Плотный массив коэффициентов без копирования (может быть длиннее degree + 1) или null
+    double[] denseView() {
+        return dense;
+    }
+
+    int termCount() {
+        return terms;
+    }
+
+    int lowestPower() {
+        return dense != null || terms == 0 ? 0 : powers[0];
     }
 
+    // Коэффициенты при x^0..x^degree; члены с отрицательными степенями отбрасываются
+    private double[] nonNegativeCoefficients() {
+        if (dense != null) {
+            return denseCoefficients();
+        }
+        double[] result = new double[degree + 1];
+        for (int i = 0; i < terms; i++) {
+            if (powers[i] >= 0) {
+                result[powers[i]] = values[i];
+            }
+        }
+        return result;
+    }
+
+    // Степени ненулевых членов по возрастанию (первые terms элементов); не изменять
+    int[] sparsePowers() {
+        return dense == null ? powers : sortedTerms().powers;
+    }
+
+    // Коэффициенты ненулевых членов в порядке sparsePowers(); не изменять
+    double[] sparseValues() {
+        return dense == null ? values : sortedTerms().values;
+    }
+
+    private Terms sortedTerms() {
+        Terms cached = sortedTerms;
+        if (cached == null) {
+            int[] termPowers = new int[terms];
+            double[] termValues = new double[terms];
+            int count = 0;
+            for (int i = 0; i <= degree; i++) {
+                if (dense[i] != 0.0) {
+                    termPowers[count] = i;
+                    termValues[count++] = dense[i];
+                }
+            }
+            cached = new Terms(termPowers, termValues);
+            sortedTerms = cached;
+        }
+        return cached;
+    }
+
+    private record Terms(int[] powers, double[] values) {
+    }
+
+    /**
+     * Сначала по степени, затем лексикографически по коэффициентам от старших степеней
+     * к младшим; отсутствующий член считается нулевым. Порядок согласован с equals.
+     */
     @Override
     public int compareTo(Polynomial other) {
 
@@ -144,14 +533,31 @@ public class Polynomial implements Comparable<Polynomial>, Cloneable {
             return degreeCompare;
         }
 
-        TreeMap<Integer, Double> thisSorted = new TreeMap<>(coefficients);
-        TreeMap<Integer, Double> otherSorted = new TreeMap<>(other.coefficients);
-
-        for (int power : thisSorted.descendingKeySet()) {
-            double thisCoeff = this.getCoefficient(power);
-            double otherCoeff = other.getCoefficient(power);
+        if (dense != null && other.dense != null) {
+            for (int power = degree; power >= 0; power--) {
+                int coeffCompare = Double.compare(dense[power], other.dense[power]);
+                if (coeffCompare != 0) {
+                    return coeffCompare;
+                }
+            }
+            return 0;
+        }
 
-            int coeffCompare = Double.compare(thisCoeff, otherCoeff);
+        int[] thisPowers = sparsePowers();
+        double[] thisValues = sparseValues();
+        int[] otherPowers = other.sparsePowers();
+        double[] otherValues = other.sparseValues();
+        int i = terms - 1;
+        int j = other.terms - 1;
+        while (i >= 0 || j >= 0) {
+            int coeffCompare;
+            if (j < 0 || i >= 0 && thisPowers[i] > otherPowers[j]) {
+                coeffCompare = Double.compare(thisValues[i--], 0.0);
+            } else if (i < 0 || otherPowers[j] > thisPowers[i]) {
+                coeffCompare = Double.compare(0.0, otherValues[j--]);
+            } else {
+                coeffCompare = Double.compare(thisValues[i--], otherValues[j--]);
+            }
             if (coeffCompare != 0) {
                 return coeffCompare;
             }
@@ -160,12 +566,13 @@ public class Polynomial implements Comparable<Polynomial>, Cloneable {
         return 0;
     }
 
+    /**
+     * Полином неизменяем, поэтому копия разделяет с ним массивы коэффициентов.
+     */
     @Override
     public Polynomial clone() {
         try {
-            Polynomial cloned = (Polynomial) super.clone();
-            HashMap<Integer, Double> newCoeffs = new HashMap<>(this.coefficients);
-            return new Polynomial(newCoeffs);
+            return (Polynomial) super.clone();
         } catch (CloneNotSupportedException e) {
             throw new AssertionError();
         }
@@ -176,27 +583,59 @@ public class Polynomial implements Comparable<Polynomial>, Cloneable {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Polynomial other = (Polynomial) obj;
-        return coefficients.equals(other.coefficients);
+        if (terms != other.terms || degree != other.degree) return false;
+        if (hash != 0 && other.hash != 0 && hash != other.hash) return false;
+        if (dense != null && other.dense != null) {
+            return Arrays.equals(dense, 0, degree + 1, other.dense, 0, degree + 1);
+        }
+        return Arrays.equals(sparsePowers(), 0, terms, other.sparsePowers(), 0, terms)
+                && Arrays.equals(sparseValues(), 0, terms, other.sparseValues(), 0, terms);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(coefficients);
+        int h = hash;
+        if (h == 0 && !hashIsZero) {
+            h = computeHash();
+            if (h == 0) {
+                hashIsZero = true;
+            } else {
+                hash = h;
+            }
+        }
+        return h;
+    }
+
+    private int computeHash() {
+        int h = 1;
+        if (dense != null) {
+            for (int i = 0; i <= degree; i++) {
+                if (dense[i] != 0.0) {
+                    h = 31 * (31 * h + i) + Double.hashCode(dense[i]);
+                }
+            }
+            return h;
+        }
+        for (int i = 0; i < terms; i++) {
+            h = 31 * (31 * h + powers[i]) + Double.hashCode(values[i]);
+        }
+        return h;
     }
 
     @Override
     public String toString() {
-        if (coefficients.isEmpty()) {
+        if (isZero()) {
             return "0";
         }
 
-        TreeMap<Integer, Double> sorted = new TreeMap<>(coefficients);
         StringBuilder sb = new StringBuilder();
         boolean firstTerm = true;
 
-        for (Map.Entry<Integer, Double> entry : sorted.descendingMap().entrySet()) {
-            int power = entry.getKey();
-            double coeff = entry.getValue();
+        int[] termPowers = sparsePowers();
+        double[] termValues = sparseValues();
+        for (int i = terms - 1; i >= 0; i--) {
+            int power = termPowers[i];
+            double coeff = termValues[i];
 
             if (!firstTerm) {
                 sb.append(coeff > 0 ? " + " : " - ");
@@ -224,4 +663,4 @@ public class Polynomial implements Comparable<Polynomial>, Cloneable {
 
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Замер производительности умножения, деления, вычисления значений и декодирования
+ * из двоичного формата полиномов по степеням и заполненности.
+ * Использование: java PolynomialBenchmark [степени...]
+ *
+ * Плотный полином заполнен целиком, разреженный — примерно на SPARSE_FILL.
+ * Делимое имеет степень 2n, делитель — n; точное умножение через CrtMultiplier замеряется
+ * на целых коэффициентах из [-1000, 1000]; значения считаются пакетом в EVALUATION_POINTS
+ * точках из [-1, 1]; сортируются SORT_SIZE случайных полиномов степени до 63.
+ * Печатается медиана времени операции.
+ */
+public class PolynomialBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 500;
+    private static final int[] DEFAULT_DEGREES = {10, 100, 1000};
+    private static final double SPARSE_FILL = 0.05;
+    private static final int EVALUATION_POINTS = 1 << 16;
+    private static final int SORT_SIZE = 100_000;
+
+    // Результаты операций пишутся сюда, чтобы JIT не выбросил вычисления
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int[] degrees = DEFAULT_DEGREES;
+        if (args.length > 0) {
+            degrees = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                degrees[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        Random random = new Random(42);
+        double[] points = new double[EVALUATION_POINTS];
+        double[] values = new double[EVALUATION_POINTS];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextDouble() * 2 - 1;
+        }
+        Polynomial[] unsorted = new Polynomial[SORT_SIZE];
+        for (int i = 0; i < unsorted.length; i++) {
+            unsorted[i] = randomPolynomial(random, random.nextInt(64), random.nextBoolean());
+        }
+        measure("sort " + SORT_SIZE + " полиномов", () -> {
+            Polynomial[] copy = unsorted.clone();
+            Arrays.sort(copy);
+            return copy;
+        });
+
+        CrtMultiplier crt = new CrtMultiplier();
+        for (int degree : degrees) {
+            long[] left = randomIntegers(random, degree + 1);
+            long[] right = randomIntegers(random, degree + 1);
+            measure("multiply CRT точно n=" + degree, () -> crt.multiply(left, right));
+
+            for (boolean dense : new boolean[]{true, false}) {
+                String kind = dense ? "плотный" : "разреженный";
+                Polynomial a = randomPolynomial(random, degree, dense);
+                Polynomial b = randomPolynomial(random, degree, dense);
+                Polynomial dividend = randomPolynomial(random, 2 * degree, dense);
+
+                measure("multiply n=" + degree + " " + kind, () -> a.multiply(b));
+                measure("divide 2n/n n=" + degree + " " + kind, () -> dividend.divide(b));
+                measure("evaluate " + EVALUATION_POINTS + " точек n=" + degree + " " + kind, () -> {
+                    a.evaluate(points, values);
+                    return values;
+                });
+
+                ByteBuffer encoded = ByteBuffer.allocate(PolynomialCodec.encodedSize(a));
+                PolynomialCodec.encode(a, encoded);
+                measure("decode n=" + degree + " " + kind, () -> PolynomialCodec.decode(encoded.rewind()));
+            }
+        }
+    }
+
+    private static Polynomial randomPolynomial(Random random, int degree, boolean dense) {
+        HashMap<Integer, Double> coefficients = new HashMap<>();
+        for (int power = 0; power < degree; power++) {
+            if (dense || random.nextDouble() < SPARSE_FILL) {
+                coefficients.put(power, random.nextDouble() * 2 - 1);
+            }
+        }
+        // Старший коэффициент задаётся всегда, чтобы степень была ровно degree
+        coefficients.put(degree, 1.0 + random.nextDouble());
+        return new Polynomial(coefficients);
+    }
+
+    // Целые коэффициенты в [-1000, 1000]
+    private static long[] randomIntegers(Random random, int length) {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextInt(2001) - 1000;
+        }
+        return values;
+    }
+
+    private static void measure(String name, Supplier<Object> operation) {
+        List<Double> nanosPerOp = new ArrayList<>();
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURE_ITERATIONS; iteration++) {
+            long operations = 0;
+            long start = System.nanoTime();
+            long deadline = start + ITERATION_MILLIS * 1_000_000;
+            long now;
+            do {
+                sink = operation.get();
+                operations++;
+                now = System.nanoTime();
+            } while (now < deadline);
+            if (iteration >= WARMUP_ITERATIONS) {
+                nanosPerOp.add((double) (now - start) / operations);
+            }
+        }
+
+        Collections.sort(nanosPerOp);
+        double median = nanosPerOp.get(nanosPerOp.size() / 2);
+        System.out.printf("%-36s %14.3f мкс/оп  [%.3f .. %.3f]%n", name, median / 1e3,
+                nanosPerOp.get(0) / 1e3, nanosPerOp.get(nanosPerOp.size() - 1) / 1e3);
+    }
+}
@@ -0,0 +1,258 @@
+import java.util.Arrays;
+
+/**
+ * Изменяемый накопитель для сборки полиномов по членам и для сумм полиномов: операции
+ * меняют его на месте, без создания промежуточных Polynomial. Коэффициенты копятся в плотном окне степеней, а если слагаемые
+ * слишком разрежены для окна — в отсортированных массивах степеней и коэффициентов.
+ *
+ * {@link #build()} отдаёт массивы накопителя полиному без копирования (если нет
+ * отрицательных степеней, которые Polynomial хранит только разреженно), после чего
+ * накопитель снова пуст.
+ */
+public final class PolynomialBuilder {
+    // Окно степеней до такого размера допустимо всегда, больше — только при достаточной заполненности
+    private static final int SMALL_SPAN = 1024;
+    private static final int MIN_FILL_DIVISOR = 4;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Плотный режим: dense[i] — коэффициент при x^(offset + i); offset <= 0
+    private double[] dense;
+    private int offset;
+    // Разреженный режим: степени по возрастанию без нулевых коэффициентов
+    private int[] powers;
+    private double[] values;
+    private int size;
+    // Запасные массивы для слияния, чтобы не выделять память на каждое сложение
+    private int[] mergePowers;
+    private double[] mergeValues;
+    // Оценка сверху числа ненулевых членов в плотном режиме
+    private long termBound;
+
+    public PolynomialBuilder() {
+    }
+
+    public PolynomialBuilder(Polynomial initial) {
+        addInPlace(initial);
+    }
+
+    public PolynomialBuilder addInPlace(Polynomial other) {
+        return addScaled(other, 1.0);
+    }
+
+    public PolynomialBuilder subtractInPlace(Polynomial other) {
+        return addScaled(other, -1.0);
+    }
+
+    /**
+     * Прибавляет factor * other.
+     */
+    public PolynomialBuilder addScaled(Polynomial other, double factor) {
+        if (other.isZero() || factor == 0.0) {
+            return this;
+        }
+
+        if (powers == null) {
+            int lowest = other.lowestPower();
+            int highest = other.degree();
+            if (fitsDense(lowest, highest, other.termCount())) {
+                ensureWindow(lowest, highest);
+                addDense(other, factor);
+                termBound += other.termCount();
+                return this;
+            }
+            toSparse();
+        }
+        addSparse(other, factor);
+        return this;
+    }
+
+    /**
+     * Задаёт коэффициент при x^power; нулевой коэффициент удаляет член.
+     */
+    public PolynomialBuilder setCoefficient(int power, double coefficient) {
+        if (powers == null) {
+            if (dense != null && power >= offset && power - offset < dense.length) {
+                dense[power - offset] = coefficient;
+                return this;
+            }
+            if (coefficient == 0.0) {
+                return this;
+            }
+            if (fitsDense(power, power, 1)) {
+                ensureWindow(power, power);
+                dense[power - offset] = coefficient;
+                termBound++;
+                return this;
+            }
+            toSparse();
+        }
+
+        int index = Arrays.binarySearch(powers, 0, size, power);
+        if (index >= 0) {
+            if (coefficient != 0.0) {
+                values[index] = coefficient;
+            } else {
+                System.arraycopy(powers, index + 1, powers, index, size - index - 1);
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+        } else if (coefficient != 0.0) {
+            index = -index - 1;
+            if (size == powers.length) {
+                powers = Arrays.copyOf(powers, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            System.arraycopy(powers, index, powers, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            powers[index] = power;
+            values[index] = coefficient;
+            size++;
+        }
+        return this;
+    }
+
+    public PolynomialBuilder scaleInPlace(double factor) {
+        if (factor == 0.0) {
+            clear();
+        } else if (powers != null) {
+            // Произведение может уйти в ноль (1e-300 * 1e-300): такие члены выбрасываются,
+            // иначе у полинома оказался бы нулевой старший коэффициент
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                double value = values[i] * factor;
+                if (value != 0.0) {
+                    powers[count] = powers[i];
+                    values[count++] = value;
+                }
+            }
+            size = count;
+        } else if (dense != null) {
+            for (int i = 0; i < dense.length; i++) {
+                dense[i] *= factor;
+            }
+        }
+        return this;
+    }
+
+    public PolynomialBuilder clear() {
+        dense = null;
+        offset = 0;
+        powers = null;
+        values = null;
+        size = 0;
+        termBound = 0;
+        return this;
+    }
+
+    /**
+     * Полином из накопленных коэффициентов; массивы передаются ему без копирования,
+     * накопитель после этого пуст.
+     */
+    public Polynomial build() {
+        Polynomial result;
+        if (powers != null) {
+            result = Polynomial.fromSparse(powers, values, size);
+        } else if (dense == null) {
+            result = new Polynomial();
+        } else if (offset == 0) {
+            result = Polynomial.fromDense(dense);
+        } else {
+            result = Polynomial.fromOffset(dense, offset);
+        }
+        clear();
+        return result;
+    }
+
+    private boolean fitsDense(int lowest, int highest, int otherTerms) {
+        long low = dense == null ? Math.min(0, lowest) : Math.min(offset, lowest);
+        long high = dense == null ? highest : Math.max((long) offset + dense.length - 1, highest);
+        long span = high - low + 1;
+        return span <= SMALL_SPAN || span <= MIN_FILL_DIVISOR * (termBound + otherTerms);
+    }
+
+    // Расширяет плотное окно, чтобы оно покрывало степени [lowest, highest], с запасом вдвое
+    private void ensureWindow(int lowest, int highest) {
+        if (dense == null) {
+            offset = Math.min(0, lowest);
+            dense = new double[Math.max(INITIAL_CAPACITY, highest - offset + 1)];
+            return;
+        }
+        int newOffset = Math.min(offset, lowest);
+        long end = (long) offset + dense.length;
+        if (newOffset == offset && highest < end) {
+            return;
+        }
+        if (newOffset < offset) {
+            // Вниз окно растёт только на отрицательные степени, там запас не нужен
+            newOffset = lowest;
+        }
+        long newEnd = Math.max(end, highest + 1L);
+        if (highest >= end) {
+            newEnd = Math.max(newEnd, (long) newOffset + 2L * dense.length);
+        }
+        double[] grown = new double[(int) (newEnd - newOffset)];
+        System.arraycopy(dense, 0, grown, offset - newOffset, dense.length);
+        dense = grown;
+        offset = newOffset;
+    }
+
+    private void addDense(Polynomial other, double factor) {
+        double[] source = other.denseView();
+        if (source != null) {
+            int shift = -offset;
+            for (int i = 0; i <= other.degree(); i++) {
+                dense[shift + i] += factor * source[i];
+            }
+            return;
+        }
+        int[] otherPowers = other.sparsePowers();
+        double[] otherValues = other.sparseValues();
+        for (int i = 0; i < other.termCount(); i++) {
+            dense[otherPowers[i] - offset] += factor * otherValues[i];
+        }
+    }
+
+    private void addSparse(Polynomial other, double factor) {
+        int capacity = size + other.termCount();
+        if (mergePowers == null || mergePowers.length < capacity) {
+            int length = Math.max(capacity, 2 * size);
+            mergePowers = new int[length];
+            mergeValues = new double[length];
+        }
+        int count = Polynomial.merge(powers, values, size, 1.0,
+                other.sparsePowers(), other.sparseValues(), other.termCount(), factor,
+                mergePowers, mergeValues);
+
+        int[] swapPowers = powers;
+        double[] swapValues = values;
+        powers = mergePowers;
+        values = mergeValues;
+        size = count;
+        mergePowers = swapPowers;
+        mergeValues = swapValues;
+    }
+
+    private void toSparse() {
+        int count = 0;
+        if (dense != null) {
+            for (double value : dense) {
+                if (value != 0.0) {
+                    count++;
+                }
+            }
+        }
+        powers = new int[Math.max(INITIAL_CAPACITY, count)];
+        values = new double[powers.length];
+        size = 0;
+        if (dense != null) {
+            for (int i = 0; i < dense.length; i++) {
+                if (dense[i] != 0.0) {
+                    powers[size] = offset + i;
+                    values[size++] = dense[i];
+                }
+            }
+        }
+        dense = null;
+        offset = 0;
+    }
+}
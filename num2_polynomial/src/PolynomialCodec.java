@@ -0,0 +1,208 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Компактный двоичный формат полинома. Запись начинается с байта кодировки и степени
+ * (zigzag-varint), дальше:
+ * <ul>
+ *   <li>DENSE — коэффициенты при x^0..x^degree подряд по 8 байт;</li>
+ *   <li>SPARSE — число членов (varint) и пары «степень, коэффициент» по возрастанию степеней:
+ *       первая степень — zigzag-varint, следующие — varint-приращения к предыдущей;</li>
+ *   <li>ZERO — нулевой полином, степени и членов нет.</li>
+ * </ul>
+ * Из двух кодировок выбирается более короткая. Коэффициенты double пишутся и читаются
+ * в порядке байт буфера. Все методы работают с текущей позиции буфера и сдвигают её
+ * за прочитанную или записанную запись.
+ */
+public final class PolynomialCodec {
+    static final byte ZERO = 0;
+    static final byte DENSE = 1;
+    static final byte SPARSE = 2;
+
+    private PolynomialCodec() {
+    }
+
+    /**
+     * Размер записи полинома в байтах.
+     */
+    public static int encodedSize(Polynomial polynomial) {
+        if (polynomial.isZero()) {
+            return 1;
+        }
+        int header = 1 + varintSize(zigzag(polynomial.degree()));
+        return header + Math.min(denseBodySize(polynomial), sparseBodySize(polynomial));
+    }
+
+    public static void encode(Polynomial polynomial, ByteBuffer buffer) {
+        if (polynomial.isZero()) {
+            buffer.put(ZERO);
+            return;
+        }
+        int degree = polynomial.degree();
+        double[] dense = polynomial.denseView();
+        boolean writeDense = denseBodySize(polynomial) <= sparseBodySize(polynomial);
+        buffer.put(writeDense ? DENSE : SPARSE);
+        writeVarint(buffer, zigzag(degree));
+
+        if (writeDense) {
+            buffer.asDoubleBuffer().put(dense, 0, degree + 1);
+            buffer.position(buffer.position() + Double.BYTES * (degree + 1));
+            return;
+        }
+        int terms = polynomial.termCount();
+        int[] powers = polynomial.sparsePowers();
+        double[] values = polynomial.sparseValues();
+        writeVarint(buffer, terms);
+        writeVarint(buffer, zigzag(powers[0]));
+        buffer.putDouble(values[0]);
+        for (int i = 1; i < terms; i++) {
+            // Разность степеней может не поместиться в int, но как беззнаковое число верна
+            writeVarint(buffer, powers[i] - powers[i - 1]);
+            buffer.putDouble(values[i]);
+        }
+    }
+
+    public static Polynomial decode(ByteBuffer buffer) {
+        byte encoding = buffer.get();
+        if (encoding == ZERO) {
+            return new Polynomial();
+        }
+        checkEncoding(encoding);
+        int degree = unzigzag(readVarint(buffer));
+
+        if (encoding == DENSE) {
+            checkDenseDegree(degree, buffer);
+            double[] coefficients = new double[degree + 1];
+            buffer.asDoubleBuffer().get(coefficients);
+            buffer.position(buffer.position() + Double.BYTES * coefficients.length);
+            return Polynomial.fromDense(coefficients);
+        }
+        int terms = readVarint(buffer);
+        // Каждый член занимает не меньше 9 байт: так испорченная запись не выделит лишнюю память
+        if (terms <= 0 || terms > buffer.remaining() / (Double.BYTES + 1)) {
+            throw new IllegalArgumentException("Invalid term count: " + terms);
+        }
+        int[] powers = new int[terms];
+        double[] values = new double[terms];
+        int power = unzigzag(readVarint(buffer));
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                power += readVarint(buffer);
+            }
+            powers[i] = power;
+            values[i] = buffer.getDouble();
+        }
+        if (power != degree) {
+            throw new IllegalArgumentException("Degree " + degree + " does not match last power " + power);
+        }
+        return Polynomial.fromSparse(powers, values, terms);
+    }
+
+    /**
+     * Значение полинома из записи в точке x без построения объекта Polynomial и без выделения памяти.
+     */
+    public static double evaluate(ByteBuffer buffer, double x) {
+        byte encoding = buffer.get();
+        if (encoding == ZERO) {
+            return 0.0;
+        }
+        checkEncoding(encoding);
+        int degree = unzigzag(readVarint(buffer));
+
+        if (encoding == DENSE) {
+            checkDenseDegree(degree, buffer);
+            int start = buffer.position();
+            double result = 0.0;
+            for (int i = degree; i >= 0; i--) {
+                result = result * x + buffer.getDouble(start + Double.BYTES * i);
+            }
+            buffer.position(start + Double.BYTES * (degree + 1));
+            return result;
+        }
+        // Члены идут по возрастанию степеней, а схема Горнера идёт со старшего, поэтому x^power
+        // считается для каждого члена заново: накопленная степень при больших пропусках
+        // переполнялась бы в 0 * Infinity
+        int terms = readVarint(buffer);
+        int power = unzigzag(readVarint(buffer));
+        double result = Polynomial.pow(x, power) * buffer.getDouble();
+        for (int i = 1; i < terms; i++) {
+            power += readVarint(buffer);
+            result += Polynomial.pow(x, power) * buffer.getDouble();
+        }
+        return result;
+    }
+
+    /**
+     * Степень полинома из заголовка записи; позиция сдвигается только за заголовок.
+     */
+    static int degree(ByteBuffer buffer) {
+        byte encoding = buffer.get();
+        if (encoding == ZERO) {
+            return -1;
+        }
+        checkEncoding(encoding);
+        return unzigzag(readVarint(buffer));
+    }
+
+    private static int denseBodySize(Polynomial polynomial) {
+        if (polynomial.denseView() == null) {
+            return Integer.MAX_VALUE;
+        }
+        return Double.BYTES * (polynomial.degree() + 1);
+    }
+
+    private static int sparseBodySize(Polynomial polynomial) {
+        int terms = polynomial.termCount();
+        int[] powers = polynomial.sparsePowers();
+        long size = varintSize(terms) + varintSize(zigzag(powers[0])) + (long) Double.BYTES * terms;
+        for (int i = 1; i < terms; i++) {
+            size += varintSize(powers[i] - powers[i - 1]);
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static void checkEncoding(byte encoding) {
+        if (encoding != DENSE && encoding != SPARSE) {
+            throw new IllegalArgumentException("Unknown polynomial encoding: " + encoding);
+        }
+    }
+
+    private static void checkDenseDegree(int degree, ByteBuffer buffer) {
+        if (degree < 0 || degree >= buffer.remaining() / Double.BYTES) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    // Беззнаковый LEB128: по 7 бит на байт, старший бит — признак продолжения
+    static void writeVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is longer than 5 bytes");
+    }
+
+    static int varintSize(int value) {
+        return value == 0 ? 1 : (Integer.SIZE - Integer.numberOfLeadingZeros(value) + 6) / 7;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,56 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш канонических экземпляров Polynomial: для равных полиномов {@link #intern} возвращает
+ * один и тот же объект, так что повторно используемые полиномы хранятся в одном экземпляре,
+ * а хэш и упорядоченные члены у него считаются один раз. Размер ограничен, при переполнении
+ * вытесняется давно не запрашивавшийся полином (LRU). Потокобезопасен.
+ */
+public final class PolynomialInterner {
+    private final int capacity;
+    private final LinkedHashMap<Polynomial, Polynomial> cache;
+    private long hits;
+    private long misses;
+
+    public PolynomialInterner(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        // accessOrder = true: get переносит запись в конец, в начале остаётся самая старая
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Polynomial, Polynomial> eldest) {
+                return size() > PolynomialInterner.this.capacity;
+            }
+        };
+    }
+
+    public synchronized Polynomial intern(Polynomial polynomial) {
+        Polynomial canonical = cache.get(polynomial);
+        if (canonical != null) {
+            hits++;
+            return canonical;
+        }
+        misses++;
+        cache.put(polynomial, polynomial);
+        return polynomial;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+}
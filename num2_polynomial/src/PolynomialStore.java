@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Файл с набором полиномов в формате {@link PolynomialCodec}, открываемый через отображение
+ * в память: открытие читает только заголовок, а полином декодируется при обращении к нему
+ * по номеру. Значение и степень можно получить прямо из файла, не строя Polynomial.
+ *
+ * Файл: заголовок HEADER_SIZE байт (магическое число, версия, размер области, число полиномов,
+ * смещение индекса), затем записи полиномов и индекс — смещения записей по 8 байт.
+ * Порядок байт — little-endian. MappedByteBuffer ограничен 2 ГБ, поэтому файл отображается
+ * областями по regionSize байт; запись писатель не разрывает границей области.
+ *
+ * Чтение потокобезопасно. Отображение освобождается сборщиком мусора, а не в close().
+ */
+public final class PolynomialStore implements AutoCloseable {
+    private static final int MAGIC = 0x504F4C59; // "POLY"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final int regionSize;
+    private final int count;
+    private final long indexOffset;
+
+    private PolynomialStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (fileSize < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE) {
+            throw new IOException("File is too short for a polynomial store");
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a polynomial store");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported polynomial store version: " + version);
+        }
+        regionSize = header.getInt();
+        count = header.getInt();
+        indexOffset = header.getLong();
+        if (regionSize < HEADER_SIZE || regionSize % Long.BYTES != 0 || count < 0
+                || indexOffset < HEADER_SIZE || indexOffset + (long) Long.BYTES * count > fileSize) {
+            throw new IOException("Corrupted polynomial store header");
+        }
+
+        regions = new MappedByteBuffer[(int) ((fileSize + regionSize - 1) / regionSize)];
+        for (int i = 0; i < regions.length; i++) {
+            long start = (long) i * regionSize;
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, fileSize - start));
+            regions[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    public static PolynomialStore open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new PolynomialStore(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Писатель нового файла (существующий перезаписывается); файл готов к чтению после close().
+     */
+    public static Writer create(Path path) throws IOException {
+        return new Writer(path, DEFAULT_REGION_SIZE);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public Polynomial get(int index) {
+        return PolynomialCodec.decode(record(index));
+    }
+
+    public int degree(int index) {
+        return PolynomialCodec.degree(record(index));
+    }
+
+    public double evaluate(int index, double x) {
+        return PolynomialCodec.evaluate(record(index), x);
+    }
+
+    // Независимый от других потоков вид записи: duplicate сбрасывает порядок байт, он задаётся заново
+    private ByteBuffer record(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + count);
+        }
+        long offset = read(indexOffset + (long) Long.BYTES * index).getLong();
+        return read(offset);
+    }
+
+    private ByteBuffer read(long offset) {
+        ByteBuffer region = regions[(int) (offset / regionSize)];
+        return region.duplicate().order(ByteOrder.LITTLE_ENDIAN).position((int) (offset % regionSize));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static final class Writer implements AutoCloseable {
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        private final FileChannel channel;
+        private final int regionSize;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        // Позиция в файле, с которой начнётся содержимое buffer
+        private long flushed = HEADER_SIZE;
+        private long[] offsets = new long[1024];
+        private int count;
+        private boolean closed;
+
+        Writer(Path path, int regionSize) throws IOException {
+            if (regionSize < HEADER_SIZE || regionSize % Long.BYTES != 0) {
+                throw new IllegalArgumentException("Region size must be a multiple of 8 not less than "
+                        + HEADER_SIZE + ": " + regionSize);
+            }
+            this.regionSize = regionSize;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        public void add(Polynomial polynomial) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("Writer is closed");
+            }
+            if (count == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many polynomials in one store");
+            }
+            int size = PolynomialCodec.encodedSize(polynomial);
+            if (size > regionSize) {
+                throw new IllegalArgumentException("Polynomial record of " + size
+                        + " bytes does not fit into a region of " + regionSize);
+            }
+            long offset = position();
+            if (offset / regionSize != (offset + size - 1) / regionSize) {
+                offset = skipTo((offset / regionSize + 1) * regionSize);
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+
+            if (size > buffer.remaining()) {
+                flush();
+            }
+            if (size > buffer.capacity()) {
+                ByteBuffer large = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+                PolynomialCodec.encode(polynomial, large);
+                large.flip();
+                writeFully(large, flushed);
+                flushed += size;
+            } else {
+                PolynomialCodec.encode(polynomial, buffer);
+            }
+        }
+
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Дописывает индекс и заголовок и закрывает файл.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                // Индекс выравнивается по 8 байт, и раз размер области кратен 8, смещение
+                // в индексе тоже не разрывается границей области
+                long indexOffset = skipTo((position() + Long.BYTES - 1) & -Long.BYTES);
+                for (int i = 0; i < count; i++) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        flush();
+                    }
+                    buffer.putLong(offsets[i]);
+                }
+                flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(regionSize).putInt(count).putLong(indexOffset);
+                header.flip();
+                writeFully(header, 0);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private long position() {
+            return flushed + buffer.position();
+        }
+
+        // Дополняет файл нулями до позиции target
+        private long skipTo(long target) throws IOException {
+            long gap = target - position();
+            if (gap > buffer.remaining()) {
+                flush();
+                flushed = target;
+            } else {
+                for (long i = 0; i < gap; i++) {
+                    buffer.put((byte) 0);
+                }
+            }
+            return target;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            long written = buffer.remaining();
+            writeFully(buffer, flushed);
+            flushed += written;
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer source, long position) throws IOException {
+            while (source.hasRemaining()) {
+                position += channel.write(source, position);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/**
+ * Динамическое программирование по состояниям (последняя клетка пути, множество занятых клеток):
+ * лучшее продолжение пути зависит только от состояния, а не от порядка обхода занятых клеток,
+ * поэтому считается один раз для всех путей, которые в него приходят. Множество — битовая маска
+ * в int, продолжения хранятся цифрами в хэш-таблице по состоянию.
+ *
+ * При лексикографическом порядке сосед, чьё число меньше числа другого свободного соседа
+ * в первой же отличающейся цифре, не рассматривается: любое продолжение через него меньше
+ * (доминирование). Число состояний растёт как cells * 2^cells, поэтому решатель рассчитан
+ * на сетки до MAX_CELLS клеток.
+ *
+ * Узел — вычисленное состояние. Когда бюджет исчерпан, оставшиеся кандидаты не рассматриваются:
+ * каждое сохранённое продолжение — цифры настоящего пути, поэтому ответ остаётся числом пути.
+ */
+final class BitmaskDpSolver implements MaxNumberSolver {
+    static final int MAX_CELLS = 20;
+
+    @Override
+    public byte[] solve(NumberGrid grid, SearchBudget budget) {
+        if (grid.cellCount > MAX_CELLS) {
+            throw new IllegalArgumentException("Сетка больше " + MAX_CELLS + " клеток: " + grid.cellCount);
+        }
+        Memo memo = new Memo(grid, budget);
+        byte[] best = memo.best(grid.startOrder, 0);
+        budget.record(memo.pendingNodes);
+        return best;
+    }
+
+    private static final class Memo {
+        private final NumberGrid grid;
+        private final SearchBudget budget;
+        // Состояния, ещё не списанные с бюджета
+        private int pendingNodes;
+        private boolean stopped;
+        // Маски соседей клетки
+        private final int[] neighborMasks;
+        // Открытая адресация: ключ состояния mask * cellCount + cell, -1 — свободная ячейка
+        private int[] keys = new int[1 << 10];
+        private byte[][] values = new byte[keys.length][];
+        private int size;
+
+        Memo(NumberGrid grid, SearchBudget budget) {
+            this.grid = grid;
+            this.budget = budget;
+            Arrays.fill(keys, -1);
+            neighborMasks = new int[grid.cellCount];
+            for (int cell = 0; cell < grid.cellCount; cell++) {
+                for (int neighbor : grid.neighbors[cell]) {
+                    neighborMasks[cell] |= 1 << neighbor;
+                }
+            }
+        }
+
+        // Наибольшее из чисел пути, начатых с клеток cells, не входящих в mask
+        byte[] best(int[] cells, int mask) {
+            byte[] best = new byte[0];
+            int leader = -1;
+            for (int cell : cells) {
+                if (stopped) {
+                    break;
+                }
+                if ((mask & 1 << cell) != 0 || leader >= 0 && grid.dominates(leader, cell)
+                        || best.length > 0 && !canBeat(cell, mask, best)) {
+                    continue;
+                }
+                if (leader < 0) {
+                    leader = cell;
+                }
+                byte[] candidate = path(cell, mask | 1 << cell);
+                if (grid.compare(candidate, best) > 0) {
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Цифры клетки cell и лучшее продолжение после неё, когда заняты клетки mask.
+         * Продолжение зависит только от свободных клеток, достижимых из cell, поэтому
+         * ключ состояния — эта компонента, а не вся маска: так совпадает больше состояний.
+         */
+        private byte[] path(int cell, int mask) {
+            int key = component(cell, ~mask) * grid.cellCount + cell;
+            int slot = find(key);
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            if (++pendingNodes >= budget.checkInterval()) {
+                stopped = !budget.charge(pendingNodes);
+                pendingNodes = 0;
+            }
+
+            byte[] tail = best(grid.neighbors[cell], mask);
+            int length = grid.length(cell);
+            byte[] result = new byte[length + tail.length];
+            System.arraycopy(grid.digits, grid.digitStart[cell], result, 0, length);
+            System.arraycopy(tail, 0, result, length, tail.length);
+
+            // Рекурсия могла расширить таблицу, поэтому ячейка ищется заново
+            slot = find(key);
+            keys[slot] = key;
+            values[slot] = result;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return result;
+        }
+
+        /**
+         * Оценка сверху, как в {@link BranchAndBoundSolver}: может ли путь, продолжающийся клеткой
+         * cell при занятых mask, дать число больше best. Длина ограничена цифрами свободных
+         * клеток, достижимых из cell, за вычетом клеток, которые путь пропустит из-за чередования
+         * цветов шахматной раскраски; цифры — наибольшей из них.
+         */
+        private boolean canBeat(int cell, int mask, byte[] best) {
+            int free = ~mask & ~(1 << cell) & (1 << grid.cellCount) - 1;
+            int component = component(cell, free);
+            int digitsLeft = 0;
+            int maxDigit = 0;
+            int sameColor = 0;
+            int otherColor = 0;
+            for (int bits = component; bits != 0; bits &= bits - 1) {
+                int next = Integer.numberOfTrailingZeros(bits);
+                digitsLeft += grid.length(next);
+                maxDigit = Math.max(maxDigit, grid.maxDigits[next]);
+                if (grid.colors[next] == grid.colors[cell]) {
+                    sameColor++;
+                } else {
+                    otherColor++;
+                }
+            }
+            int longest = otherColor > sameColor ? 2 * sameColor + 1 : 2 * otherColor;
+            int length = grid.length(cell);
+            int bound = length + digitsLeft - Math.max(sameColor + otherColor - longest, 0);
+
+            if (grid.numeric && bound != best.length) {
+                return bound > best.length;
+            }
+            int start = grid.digitStart[cell];
+            for (int i = 0; i < length && i < best.length; i++) {
+                if (grid.digits[start + i] != best[i]) {
+                    return grid.digits[start + i] > best[i];
+                }
+            }
+            if (bound > best.length) {
+                return true;
+            }
+            for (int i = length; i < bound; i++) {
+                if (best[i] < maxDigit) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Свободные клетки из free, достижимые из cell (сама cell не входит)
+        private int component(int cell, int free) {
+            int reached = neighborMasks[cell] & free;
+            int frontier = reached;
+            while (frontier != 0) {
+                int next = 0;
+                for (int bits = frontier; bits != 0; bits &= bits - 1) {
+                    next |= neighborMasks[Integer.numberOfTrailingZeros(bits)];
+                }
+                frontier = next & free & ~reached;
+                reached |= frontier;
+            }
+            return reached;
+        }
+
+        private int find(int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (keys[slot] != -1 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            byte[][] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new byte[keys.length][];
+            Arrays.fill(keys, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
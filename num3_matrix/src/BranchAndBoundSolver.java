@@ -0,0 +1,446 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Перебор путей с возвратом и отсечением ветвей, которые уже не могут обогнать лучшее
+ * найденное число: префикс пути меньше префикса лучшего числа, либо оставшихся цифр
+ * не хватает, чтобы стать длиннее лучшего, и среди них нет цифры больше нужной.
+ * Подходит для сеток любого размера, но в худшем случае экспоненциален.
+ *
+ * В параллельном режиме стартовые клетки и неглубокие поддеревья перебора становятся
+ * задачами ForkJoinPool. Лучшее число общее для всех задач: неизменяемый массив цифр
+ * в AtomicReference, заменяемый через compareAndSet, так что каждая задача отсекает ветви
+ * по лучшему результату всех остальных. Наибольшее число единственно, поэтому ответ
+ * совпадает с последовательным поиском.
+ *
+ * Узел перебора — попытка добавить клетку к пути. Когда бюджет исчерпан, все задачи
+ * сворачиваются, а ответом остаётся общее лучшее число: оно всегда число настоящего пути.
+ */
+final class BranchAndBoundSolver implements MaxNumberSolver {
+    // Поддеревья глубже не выделяются в задачи: их слишком много и они слишком малы
+    private static final int MAX_SPLIT_DEPTH = 12;
+    // Новая задача создаётся, пока у потока в очереди не больше стольких лишних задач
+    private static final int SURPLUS_TASKS = 2;
+
+    // null — последовательный поиск в вызывающем потоке
+    private final ForkJoinPool pool;
+
+    BranchAndBoundSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public byte[] solve(NumberGrid grid, SearchBudget budget) {
+        AtomicReference<byte[]> best = new AtomicReference<>(new byte[0]);
+        if (pool == null) {
+            Search search = new Search(grid, best, budget);
+            for (int start : grid.startOrder) {
+                if (search.enter(start, 0) && !search.explore(0, null)) {
+                    break;
+                }
+            }
+            search.recordNodes();
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    List<SearchTask> tasks = new ArrayList<>();
+                    for (int start : grid.startOrder) {
+                        tasks.add(new SearchTask(grid, best, budget, start));
+                    }
+                    invokeAll(tasks);
+                }
+            });
+        }
+        return best.get();
+    }
+
+    /**
+     * Изменяемое состояние перебора в одном потоке. Текущий путь хранится массивами
+     * по глубине, а его число — в буфере current, поэтому рекурсии нет и глубина пути
+     * не ограничена стеком. Посещённые клетки — битовая маска: клетки 0..63 в одном long,
+     * остальные, если сетка больше, в массиве long.
+     */
+    private static final class Search {
+        private static final int NO_MISMATCH = Integer.MAX_VALUE;
+
+        private final NumberGrid grid;
+        private final AtomicReference<byte[]> shared;
+        private final SearchBudget budget;
+        // Узлы, ещё не списанные с бюджета
+        private int pendingNodes;
+
+        private long visitedLow;
+        private final long[] visitedHigh;
+        private final int[] path;
+        private final int[] nextNeighbor;
+        // Конец цифр клетки path[depth] в current
+        private final int[] pathEnd;
+        private final byte[] current;
+        // Цифры непосещённых клеток: всего и по значению
+        private int remainingDigits;
+        private final int[] digitCounts;
+
+        // Последнее увиденное общее лучшее число и firstBelow для него: firstBelow[d][i] —
+        // первая позиция j >= i, где best[j] < d, или best.length, если такой нет
+        private byte[] best;
+        private final int[][] firstBelow;
+        // Первая позиция, где current отличается от best, или NO_MISMATCH; greater — current
+        // там больше. При лексикографическом сравнении отличие всегда в меньшую сторону:
+        // большее число сразу становится лучшим
+        private int mismatch = NO_MISMATCH;
+        private boolean greater;
+
+        // Буферы обхода достижимых клеток для оценки длины при числовом сравнении
+        private final int[] queue;
+        private final int[] reached;
+        private int generation;
+        // Наибольшая цифра достижимых клеток, посчитанная последним reachableDigits
+        private int reachableMaxDigit;
+
+        Search(NumberGrid grid, AtomicReference<byte[]> shared, SearchBudget budget) {
+            this.grid = grid;
+            this.shared = shared;
+            this.budget = budget;
+            visitedHigh = grid.cellCount > Long.SIZE ? new long[(grid.cellCount - 1) / Long.SIZE] : null;
+            path = new int[grid.cellCount];
+            nextNeighbor = new int[grid.cellCount];
+            pathEnd = new int[grid.cellCount];
+            current = new byte[grid.digits.length];
+            remainingDigits = grid.digits.length;
+            digitCounts = new int[10];
+            for (byte digit : grid.digits) {
+                digitCounts[digit]++;
+            }
+            firstBelow = new int[10][grid.digits.length + 1];
+            queue = new int[grid.cellCount];
+            reached = new int[grid.cellCount];
+            adopt(shared.get(), 0);
+        }
+
+        // Копия состояния с путём до глубины depth включительно, для отдельной задачи
+        Search(Search source, int depth) {
+            grid = source.grid;
+            shared = source.shared;
+            budget = source.budget;
+            visitedLow = source.visitedLow;
+            visitedHigh = source.visitedHigh == null ? null : source.visitedHigh.clone();
+            path = source.path.clone();
+            nextNeighbor = new int[grid.cellCount];
+            pathEnd = source.pathEnd.clone();
+            current = source.current.clone();
+            remainingDigits = source.remainingDigits;
+            digitCounts = source.digitCounts.clone();
+            firstBelow = new int[10][grid.digits.length + 1];
+            queue = new int[grid.cellCount];
+            reached = new int[grid.cellCount];
+            adopt(source.best, depth < 0 ? 0 : pathEnd[depth]);
+        }
+
+        /**
+         * Перебор продолжений пути, уже доведённого до глубины baseDepth. Если передан список
+         * forked, неглубокие поддеревья отдаются в новые задачи, пока пулу не хватает работы.
+         * Возвращает false, если перебор прерван исчерпанием бюджета; состояние пути
+         * тогда не восстанавливается, и продолжать поиск этим объектом нельзя.
+         */
+        boolean explore(int baseDepth, List<SearchTask> forked) {
+            int depth = baseDepth;
+            while (depth >= baseDepth) {
+                if (pendingNodes >= budget.checkInterval()) {
+                    boolean withinBudget = budget.charge(pendingNodes);
+                    pendingNodes = 0;
+                    if (!withinBudget) {
+                        return false;
+                    }
+                }
+                int cell = path[depth];
+                int[] neighbors = grid.neighbors[cell];
+                if (nextNeighbor[depth] < neighbors.length) {
+                    int next = neighbors[nextNeighbor[depth]++];
+                    if (isVisited(next)) {
+                        continue;
+                    }
+                    if (forked != null && depth < MAX_SPLIT_DEPTH
+                            && ForkJoinTask.getSurplusQueuedTaskCount() <= SURPLUS_TASKS
+                            && !grid.losesTo(next, best, pathEnd[depth])) {
+                        SearchTask task = new SearchTask(new Search(this, depth), next, depth + 1);
+                        task.fork();
+                        forked.add(task);
+                    } else if (enter(next, depth + 1)) {
+                        depth++;
+                    }
+                } else {
+                    leave(cell);
+                    depth--;
+                }
+            }
+            return true;
+        }
+
+        // Списывает с бюджета оставшиеся узлы по окончании перебора
+        void recordNodes() {
+            budget.record(pendingNodes);
+            pendingNodes = 0;
+        }
+
+        /**
+         * Добавляет клетку в путь на глубину depth и сравнивает новые цифры с лучшим числом;
+         * если текущее число обогнало лучшее, оно само становится лучшим. Возвращает false
+         * (и убирает клетку), если продолжать путь из неё бессмысленно.
+         */
+        boolean enter(int cell, int depth) {
+            pendingNodes++;
+            int from = depth == 0 ? 0 : pathEnd[depth - 1];
+            byte[] latest = shared.get();
+            if (latest != best) {
+                adopt(latest, from);
+            }
+            if (mismatch >= from) {
+                mismatch = NO_MISMATCH;
+            }
+            if (!grid.numeric && mismatch != NO_MISMATCH) {
+                return false;
+            }
+
+            int length = grid.length(cell);
+            System.arraycopy(grid.digits, grid.digitStart[cell], current, from, length);
+            int to = from + length;
+            for (int i = from; mismatch == NO_MISMATCH && i < to && i < best.length; i++) {
+                if (current[i] != best[i]) {
+                    mismatch = i;
+                    greater = current[i] > best[i];
+                }
+            }
+            if (beatsBest(to)) {
+                publish(to);
+            }
+            if (!grid.numeric && mismatch != NO_MISMATCH) {
+                return false;
+            }
+
+            setVisited(cell, true);
+            path[depth] = cell;
+            nextNeighbor[depth] = 0;
+            pathEnd[depth] = to;
+            remainingDigits -= length;
+            for (int i = grid.digitStart[cell]; i < grid.digitStart[cell + 1]; i++) {
+                digitCounts[grid.digits[i]]--;
+            }
+            if (!canBeatBest(cell, to)) {
+                leave(cell);
+                return false;
+            }
+            return true;
+        }
+
+        void leave(int cell) {
+            setVisited(cell, false);
+            remainingDigits += grid.length(cell);
+            for (int i = grid.digitStart[cell]; i < grid.digitStart[cell + 1]; i++) {
+                digitCounts[grid.digits[i]]++;
+            }
+        }
+
+        private boolean isVisited(int cell) {
+            if (cell < Long.SIZE) {
+                return (visitedLow & 1L << cell) != 0;
+            }
+            return (visitedHigh[(cell >> 6) - 1] & 1L << cell) != 0;
+        }
+
+        private void setVisited(int cell, boolean value) {
+            if (cell < Long.SIZE) {
+                visitedLow = value ? visitedLow | 1L << cell : visitedLow & ~(1L << cell);
+            } else {
+                int word = (cell >> 6) - 1;
+                visitedHigh[word] = value ? visitedHigh[word] | 1L << cell : visitedHigh[word] & ~(1L << cell);
+            }
+        }
+
+        // current[0..length) больше best; mismatch уже посчитан по этой длине
+        private boolean beatsBest(int length) {
+            if (grid.numeric) {
+                return length > best.length || length == best.length && mismatch != NO_MISMATCH && greater;
+            }
+            return mismatch == NO_MISMATCH ? length > best.length : greater;
+        }
+
+        // Делает current[0..length) общим лучшим числом, если его не обогнали раньше
+        private void publish(int length) {
+            byte[] candidate = Arrays.copyOf(current, length);
+            while (true) {
+                byte[] latest = shared.get();
+                if (grid.compare(candidate, latest) <= 0) {
+                    adopt(latest, length);
+                    return;
+                }
+                if (shared.compareAndSet(latest, candidate)) {
+                    adopt(candidate, length);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Переходит на новое лучшее число (его могла найти другая задача) и заново сравнивает
+         * с ним префикс current[0..length). При лексикографическом сравнении новое число
+         * не меньше прежнего, а префикс совпадал с прежним, поэтому он либо совпадает и с новым,
+         * либо меньше него.
+         */
+        private void adopt(byte[] latest, int length) {
+            best = latest;
+            int common = Math.min(length, latest.length);
+            mismatch = Arrays.mismatch(current, 0, common, latest, 0, common);
+            if (mismatch < 0) {
+                mismatch = NO_MISMATCH;
+            } else {
+                greater = current[mismatch] > latest[mismatch];
+            }
+            for (int d = 0; d < 10; d++) {
+                int[] below = firstBelow[d];
+                below[latest.length] = latest.length;
+                for (int i = latest.length - 1; i >= 0; i--) {
+                    below[i] = latest[i] < d ? i : below[i + 1];
+                }
+            }
+        }
+
+        /**
+         * Верхняя оценка: продолжение пути из позиции length — не больше remainingDigits цифр,
+         * каждая не больше наибольшей оставшейся. Лексикографически обогнать лучшее число можно,
+         * только став длиннее него или встретив в нём на доступной позиции цифру меньше этой
+         * наибольшей. При числовом сравнении нужна длина не меньше лучшей, а при равной длине —
+         * то же условие на цифры; длина важнее, поэтому оставшиеся цифры оцениваются точнее
+         * (см. {@link #reachableDigits}).
+         */
+        private boolean canBeatBest(int cell, int length) {
+            int digitsLeft = remainingDigits;
+            int maxDigit = 9;
+            while (maxDigit > 0 && digitCounts[maxDigit] == 0) {
+                maxDigit--;
+            }
+            if (grid.numeric) {
+                if (length + digitsLeft >= best.length) {
+                    digitsLeft = reachableDigits(cell);
+                    maxDigit = reachableMaxDigit;
+                }
+                if (length + digitsLeft != best.length) {
+                    return length + digitsLeft > best.length;
+                }
+                if (mismatch != NO_MISMATCH) {
+                    return greater;
+                }
+            } else if (length + digitsLeft > best.length) {
+                return true;
+            }
+            return firstBelow[maxDigit][length] < length + digitsLeft;
+        }
+
+        /**
+         * Сколько цифр ещё может набрать путь из клетки head. Считаются непосещённые клетки,
+         * достижимые из head (обход в ширину), и из них вычитаются клетки, которые простой путь
+         * заведомо пропустит: сетка двудольна, и цвета клеток на пути чередуются, начиная
+         * с цвета, противоположного head, а тупиков (клеток с одним свободным соседом не рядом
+         * с head) путь может пройти только один — последним. Каждая пропущенная клетка
+         * даёт хотя бы одну цифру.
+         */
+        private int reachableDigits(int head) {
+            // Метка обхода — его номер, чтобы не очищать массив
+            generation++;
+            int tail = 0;
+            int digitsLeft = 0;
+            int sameColor = 0;
+            int otherColor = 0;
+            reachableMaxDigit = 0;
+            reached[head] = generation;
+            for (int next : grid.neighbors[head]) {
+                if (!isVisited(next)) {
+                    reached[next] = generation;
+                    queue[tail++] = next;
+                }
+            }
+            int deadEnds = 0;
+            for (int index = 0; index < tail; index++) {
+                int cell = queue[index];
+                digitsLeft += grid.length(cell);
+                if (grid.colors[cell] == grid.colors[head]) {
+                    sameColor++;
+                } else {
+                    otherColor++;
+                }
+                reachableMaxDigit = Math.max(reachableMaxDigit, grid.maxDigits[cell]);
+                int free = 0;
+                boolean nearHead = false;
+                for (int next : grid.neighbors[cell]) {
+                    if (next == head) {
+                        nearHead = true;
+                    } else if (!isVisited(next)) {
+                        free++;
+                        if (reached[next] != generation) {
+                            reached[next] = generation;
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+                if (free <= 1 && !nearHead) {
+                    deadEnds++;
+                }
+            }
+
+            int longest = otherColor > sameColor ? 2 * sameColor + 1 : 2 * otherColor;
+            int skipped = Math.max(tail - longest, deadEnds - 1);
+            return digitsLeft - Math.max(skipped, 0);
+        }
+    }
+
+    // Перебор поддерева: клетка cell добавляется к пути на глубину depth и перебираются её продолжения
+    private static final class SearchTask extends RecursiveAction {
+        private final NumberGrid grid;
+        private final AtomicReference<byte[]> shared;
+        private final SearchBudget budget;
+        // null у задачи стартовой клетки: состояние создаётся при запуске, чтобы задачи
+        // в очереди не держали память
+        private final Search search;
+        private final int cell;
+        private final int depth;
+
+        SearchTask(NumberGrid grid, AtomicReference<byte[]> shared, SearchBudget budget, int start) {
+            this.grid = grid;
+            this.shared = shared;
+            this.budget = budget;
+            this.search = null;
+            this.cell = start;
+            this.depth = 0;
+        }
+
+        SearchTask(Search search, int cell, int depth) {
+            this.grid = null;
+            this.shared = null;
+            this.budget = search.budget;
+            this.search = search;
+            this.cell = cell;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (budget.isExhausted() || this.search == null && grid.losesTo(cell, shared.get(), 0)) {
+                return;
+            }
+            Search search = this.search != null ? this.search : new Search(grid, shared, budget);
+            List<SearchTask> forked = new ArrayList<>();
+            if (search.enter(cell, depth)) {
+                search.explore(depth, forked);
+            }
+            search.recordNodes();
+            for (SearchTask task : forked) {
+                task.join();
+            }
+        }
+    }
+}
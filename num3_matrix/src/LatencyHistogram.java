@@ -0,0 +1,74 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма времени в наносекундах с корзинами по степеням двойки: корзина i содержит
+ * значения из [2^(i-1), 2^i), корзина 0 — ноль. Перцентили поэтому точны до двух раз,
+ * зато запись — одно атомарное приращение без блокировок. Потокобезопасна.
+ */
+public final class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+
+    public void record(long nanos) {
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Верхняя граница корзины, в которую попадает перцентиль percentile (от 0 до 100),
+     * в наносекундах; 0, если значений нет.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Перцентиль вне диапазона 0..100: " + percentile);
+        }
+        long[] counts = snapshot();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (counts[i] > 0 && seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Непустые корзины по строке: "от .. до мкс: число".
+     */
+    @Override
+    public String toString() {
+        long[] counts = snapshot();
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                long lower = i == 0 ? 0 : 1L << (i - 1);
+                result.append(String.format("%12.3f .. %12.3f мкс: %d%n", lower / 1e3, upperBound(i) / 1e3, counts[i]));
+            }
+        }
+        return result.toString();
+    }
+
+    private long[] snapshot() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+}
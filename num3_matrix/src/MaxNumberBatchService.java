@@ -0,0 +1,122 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пакетный поиск наибольших чисел: сетки решаются параллельно на пуле из заданного числа
+ * потоков, каждая — последовательным {@link MaxNumberFinder} со своим бюджетом узлов
+ * и времени. Бюджет отсчитывается с начала поиска по сетке, а не с постановки в очередь,
+ * так что одна тяжёлая сетка занимает поток не дольше своего лимита времени и не задерживает
+ * остальные. Когда бюджет кончается, результатом становится лучшее найденное число
+ * с признаком «приближённо» (см. {@link MaxNumberResult}).
+ *
+ * Время поиска всех сеток собирается в гистограмму {@link #getLatencies()}, число узлов
+ * каждой сетки — в её результате. Поиск занимает процессор, поэтому потоков обычно столько же,
+ * сколько ядер; сетки сверх них ждут в очереди.
+ */
+public final class MaxNumberBatchService implements AutoCloseable {
+    private final MaxNumberFinder finder;
+    private final ExecutorService executor;
+    private final long maxNodes;
+    private final long timeLimitNanos;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong approximate = new AtomicLong();
+
+    /**
+     * @param maxNodes  бюджет узлов перебора на одну сетку
+     * @param timeLimit бюджет времени на одну сетку
+     */
+    public MaxNumberBatchService(MaxNumberFinder.Order order, int threads, long maxNodes, Duration timeLimit) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным: " + threads);
+        }
+        if (maxNodes <= 0) {
+            throw new IllegalArgumentException("Бюджет узлов должен быть положительным: " + maxNodes);
+        }
+        if (timeLimit.isNegative() || timeLimit.isZero()) {
+            throw new IllegalArgumentException("Бюджет времени должен быть положительным: " + timeLimit);
+        }
+        this.finder = new MaxNumberFinder(order);
+        this.maxNodes = maxNodes;
+        this.timeLimitNanos = timeLimit.toNanos();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "max-number-" + threadNumber.incrementAndGet());
+            // Незакрытый сервис не мешает завершению программы
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ставит сетку в очередь с бюджетом сервиса. Ошибка входных данных завершает
+     * future исключением IllegalArgumentException.
+     */
+    public CompletableFuture<MaxNumberResult> submit(int[][] matrix) {
+        return submit(matrix, maxNodes, Duration.ofNanos(timeLimitNanos));
+    }
+
+    public CompletableFuture<MaxNumberResult> submit(int[][] matrix, long maxNodes, Duration timeLimit) {
+        Objects.requireNonNull(matrix);
+        long limitNanos = timeLimit.toNanos();
+        return CompletableFuture.supplyAsync(() -> {
+            MaxNumberResult result = finder.search(matrix, SearchBudget.of(maxNodes, limitNanos));
+            latencies.record(result.getElapsedNanos());
+            if (!result.isExact()) {
+                approximate.incrementAndGet();
+            }
+            return result;
+        }, executor);
+    }
+
+    /**
+     * Решает все сетки и возвращает результаты в том же порядке.
+     */
+    public List<MaxNumberResult> solveAll(Iterable<int[][]> matrices) {
+        List<CompletableFuture<MaxNumberResult>> futures = new ArrayList<>();
+        for (int[][] matrix : matrices) {
+            futures.add(submit(matrix));
+        }
+        List<MaxNumberResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<MaxNumberResult> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Гистограмма времени поиска по сеткам, решённым с момента создания сервиса.
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Сколько сеток решено приближённо: бюджет кончился раньше поиска.
+     */
+    public long getApproximateCount() {
+        return approximate.get();
+    }
+
+    /**
+     * Новые сетки больше не принимаются; уже поставленные в очередь дорешиваются.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
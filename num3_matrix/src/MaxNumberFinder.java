@@ -1,42 +1,101 @@
-import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Поиск наибольшего числа, составленного из клеток простого пути по сетке: путь начинается
+ * в любой клетке и идёт вверх, вниз, влево или вправо, не заходя в клетку дважды; числа
+ * клеток записываются подряд. По умолчанию числа сравниваются как строки (лексикографически,
+ * так что "9" больше "81234"), в режиме {@link Order#NUMERIC} — по значению: сначала по числу
+ * цифр, затем по цифрам. В числовом режиме путь не начинается с клетки 0 — ведущий ноль
+ * не меняет значения, — и если других клеток нет, ответ "0".
+ *
+ * Сетка — любая прямоугольная, клетки — неотрицательные числа, в том числе многозначные.
+ * Способ поиска выбирается по размеру сетки: маленькие решаются динамическим
+ * программированием по маскам ({@link BitmaskDpSolver}), остальные — перебором
+ * с отсечениями ({@link BranchAndBoundSolver}), в параллельном режиме — на ForkJoinPool.
+ * Состояние поиска своё у каждого вызова, поэтому один экземпляр можно использовать
+ * из разных потоков.
+ */
 public class MaxNumberFinder {
+    // До стольких клеток динамическое программирование быстрее перебора (см. MaxNumberFinderBenchmark),
+    // дальше число состояний растёт быстрее, чем помогают отсечения
+    static final int DP_MAX_CELLS = 12;
 
-    private static final int SIZE = 3;
-    private static final int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}}; // вверх, вниз, влево, вправо
-    private String maxNumber = "";
+    /**
+     * Порядок сравнения чисел.
+     */
+    public enum Order {
+        LEXICOGRAPHIC,
+        NUMERIC
+    }
 
-    public String findMaxNumber(int[][] matrix) {
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                boolean[][] visited = new boolean[SIZE][SIZE];
-                dfs(matrix, i, j, "", visited);
-            }
-        }
-        return maxNumber;
+    private final Order order;
+    // null — последовательный поиск в вызывающем потоке
+    private final ForkJoinPool pool;
+
+    public MaxNumberFinder() {
+        this(Order.LEXICOGRAPHIC);
     }
 
-    private void dfs(int[][] matrix, int x, int y, String currentNumber, boolean[][] visited) {
-        visited[x][y] = true;
-        currentNumber += matrix[x][y];
+    public MaxNumberFinder(Order order) {
+        this.order = Objects.requireNonNull(order);
+        this.pool = null;
+    }
 
-        if (currentNumber.compareTo(maxNumber) > 0) {
-            maxNumber = currentNumber;
-        }
+    /**
+     * Параллельный поиск на заданном пуле.
+     */
+    public MaxNumberFinder(ForkJoinPool pool) {
+        this(Order.LEXICOGRAPHIC, pool);
+    }
 
-        for (int[] direction : directions) {
-            int newX = x + direction[0];
-            int newY = y + direction[1];
+    public MaxNumberFinder(Order order, ForkJoinPool pool) {
+        this.order = Objects.requireNonNull(order);
+        this.pool = Objects.requireNonNull(pool);
+    }
 
-            if (isValid(newX, newY, visited)) {
-                dfs(matrix, newX, newY, currentNumber, visited);
+    public String findMaxNumber(int[][] matrix) {
+        return search(matrix, SearchBudget.unlimited()).getNumber();
+    }
+
+    /**
+     * Поиск с бюджетом узлов и времени; им пользуется {@link MaxNumberBatchService}.
+     */
+    MaxNumberResult search(int[][] matrix, SearchBudget budget) {
+        long start = System.nanoTime();
+        int rows = matrix.length;
+        int columns = rows == 0 ? 0 : matrix[0].length;
+        for (int[] row : matrix) {
+            if (row.length != columns) {
+                throw new IllegalArgumentException("Сетка должна быть прямоугольной");
+            }
+            for (int value : row) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Отрицательное число в клетке: " + value);
+                }
             }
         }
+        if (rows == 0 || columns == 0) {
+            return new MaxNumberResult("", true, 0, System.nanoTime() - start);
+        }
 
-        visited[x][y] = false;
-    }
+        NumberGrid grid = new NumberGrid(matrix, rows, columns, order == Order.NUMERIC);
+        MaxNumberSolver solver = grid.cellCount <= DP_MAX_CELLS
+                ? new BitmaskDpSolver()
+                : new BranchAndBoundSolver(pool);
 
-    private boolean isValid(int x, int y, boolean[][] visited) {
-        return x >= 0 && x < SIZE && y >= 0 && y < SIZE && !visited[x][y];
+        byte[] digits = solver.solve(grid, budget);
+        String number;
+        if (digits.length == 0) {
+            // Все клетки нулевые, а в числовом режиме с них путь не начинается
+            number = "0";
+        } else {
+            char[] result = new char[digits.length];
+            for (int i = 0; i < digits.length; i++) {
+                result[i] = (char) ('0' + digits[i]);
+            }
+            number = new String(result);
+        }
+        return new MaxNumberResult(number, !budget.isExhausted(), budget.nodes(), System.nanoTime() - start);
     }
 }
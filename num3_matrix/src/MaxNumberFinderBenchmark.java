@@ -0,0 +1,153 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Замер производительности MaxNumberFinder на случайных сетках разного размера.
+ * Использование: java MaxNumberFinderBenchmark [размеры стороны сетки...]
+ *
+ * Для каждого размера заранее генерируется GRIDS_PER_SIZE сеток из цифр 0..9;
+ * одна операция — поиск по одной сетке, последовательный и параллельный на общем пуле,
+ * а на сетках до NUMERIC_MAX_SIZE — ещё и с числовым порядком. Затем на сетках SOLVER_SHAPES
+ * решатели сравниваются напрямую, в обоих порядках: по этим замерам выбран
+ * MaxNumberFinder.DP_MAX_CELLS. В конце пакет тяжёлых сеток решается MaxNumberBatchService
+ * с бюджетом времени.
+ * Печатается медиана времени операции.
+ */
+public class MaxNumberFinderBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 500;
+    private static final int GRIDS_PER_SIZE = 16;
+    private static final int[] DEFAULT_SIZES = {3, 6, 10, 16};
+    // Числовой порядок требует самого длинного пути, и на больших сетках перебор слишком долог
+    private static final int NUMERIC_MAX_SIZE = 7;
+    // Сетки строк x столбцов, на которых динамическое программирование сравнивается с перебором
+    private static final int[][] SOLVER_SHAPES = {{3, 3}, {3, 4}, {4, 4}, {4, 5}};
+    // Пакет для MaxNumberBatchService
+    private static final int BATCH_GRIDS = 32;
+    private static final int BATCH_SIZE = 8;
+    private static final Duration BATCH_TIME_LIMIT = Duration.ofMillis(50);
+
+    // Результаты операций пишутся сюда, чтобы JIT не выбросил вычисления
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        Random random = new Random(42);
+        MaxNumberFinder sequential = new MaxNumberFinder();
+        MaxNumberFinder parallel = new MaxNumberFinder(ForkJoinPool.commonPool());
+        MaxNumberFinder numeric = new MaxNumberFinder(MaxNumberFinder.Order.NUMERIC);
+        for (int size : sizes) {
+            int[][][] grids = new int[GRIDS_PER_SIZE][][];
+            for (int i = 0; i < grids.length; i++) {
+                grids[i] = randomGrid(random, size, size);
+            }
+
+            int[] next = {0};
+            measure("findMaxNumber " + size + "x" + size, () -> {
+                int[][] grid = grids[next[0]++ % grids.length];
+                return sequential.findMaxNumber(grid);
+            });
+            measure("findMaxNumber " + size + "x" + size + " parallel", () -> {
+                int[][] grid = grids[next[0]++ % grids.length];
+                return parallel.findMaxNumber(grid);
+            });
+            if (size <= NUMERIC_MAX_SIZE) {
+                measure("findMaxNumber " + size + "x" + size + " numeric", () -> {
+                    int[][] grid = grids[next[0]++ % grids.length];
+                    return numeric.findMaxNumber(grid);
+                });
+            }
+        }
+
+        MaxNumberSolver dp = new BitmaskDpSolver();
+        MaxNumberSolver branchAndBound = new BranchAndBoundSolver(null);
+        for (int[] shape : SOLVER_SHAPES) {
+            for (boolean numericOrder : new boolean[] {false, true}) {
+                NumberGrid[] grids = new NumberGrid[GRIDS_PER_SIZE];
+                for (int i = 0; i < grids.length; i++) {
+                    grids[i] = new NumberGrid(randomGrid(random, shape[0], shape[1]), shape[0], shape[1], numericOrder);
+                }
+                String suffix = " " + shape[0] + "x" + shape[1] + (numericOrder ? " numeric" : "");
+                int[] next = {0};
+                measure("dp" + suffix, () -> dp.solve(grids[next[0]++ % grids.length], SearchBudget.unlimited()));
+                measure("branch-and-bound" + suffix, () -> branchAndBound.solve(grids[next[0]++ % grids.length],
+                        SearchBudget.unlimited()));
+            }
+        }
+
+        batch(random);
+    }
+
+    /**
+     * Пакет сеток, на части которых поиск с числовым порядком идёт секундами: с бюджетом
+     * BATCH_TIME_LIMIT сервис отвечает на каждую не дольше лимита. Печатаются время пакета,
+     * число приближённых ответов, узлы и гистограмма времени поиска.
+     */
+    private static void batch(Random random) {
+        List<int[][]> grids = new ArrayList<>();
+        for (int i = 0; i < BATCH_GRIDS; i++) {
+            grids.add(randomGrid(random, BATCH_SIZE, BATCH_SIZE));
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        try (MaxNumberBatchService service = new MaxNumberBatchService(MaxNumberFinder.Order.NUMERIC, threads,
+                Long.MAX_VALUE, BATCH_TIME_LIMIT)) {
+            long start = System.nanoTime();
+            List<MaxNumberResult> results = service.solveAll(grids);
+            long elapsed = System.nanoTime() - start;
+            long nodes = 0;
+            for (MaxNumberResult result : results) {
+                nodes += result.getNodes();
+            }
+            System.out.printf("batch %d grids %dx%d numeric, limit %d мс: %.1f мс, приближённых %d, узлов %d%n",
+                    BATCH_GRIDS, BATCH_SIZE, BATCH_SIZE, BATCH_TIME_LIMIT.toMillis(), elapsed / 1e6,
+                    service.getApproximateCount(), nodes);
+            System.out.print(service.getLatencies());
+        }
+    }
+
+    private static int[][] randomGrid(Random random, int rows, int columns) {
+        int[][] grid = new int[rows][columns];
+        for (int[] row : grid) {
+            for (int j = 0; j < columns; j++) {
+                row[j] = random.nextInt(10);
+            }
+        }
+        return grid;
+    }
+
+    private static void measure(String name, Supplier<Object> operation) {
+        List<Double> nanosPerOp = new ArrayList<>();
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURE_ITERATIONS; iteration++) {
+            long operations = 0;
+            long start = System.nanoTime();
+            long deadline = start + ITERATION_MILLIS * 1_000_000;
+            long now;
+            do {
+                sink = operation.get();
+                operations++;
+                now = System.nanoTime();
+            } while (now < deadline);
+            if (iteration >= WARMUP_ITERATIONS) {
+                nanosPerOp.add((double) (now - start) / operations);
+            }
+        }
+
+        Collections.sort(nanosPerOp);
+        double median = nanosPerOp.get(nanosPerOp.size() / 2);
+        System.out.printf("%-36s %14.3f мкс/оп  [%.3f .. %.3f]%n", name, median / 1e3,
+                nanosPerOp.get(0) / 1e3, nanosPerOp.get(nanosPerOp.size() - 1) / 1e3);
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Результат поиска по одной сетке с бюджетом. Если бюджет кончился раньше, чем поиск,
+ * число — наибольшее из найденных (число настоящего пути, но, возможно, не наибольшее),
+ * и {@link #isExact()} возвращает false.
+ */
+public final class MaxNumberResult {
+    private final String number;
+    private final boolean exact;
+    private final long nodes;
+    private final long elapsedNanos;
+
+    MaxNumberResult(String number, boolean exact, long nodes, long elapsedNanos) {
+        this.number = number;
+        this.exact = exact;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Число узлов перебора, пройденных поиском.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Время поиска в наносекундах, без ожидания в очереди.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return number + (exact ? "" : " (приближённо)") + ", узлов: " + nodes
+                + ", " + elapsedNanos / 1000 + " мкс";
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Способ поиска наибольшего числа на сетке: возвращает цифры наибольшего числа
+ * в порядке сравнения сетки или пустой массив, если подходящего пути нет.
+ * Пройденные узлы списываются с budget; если он исчерпан, возвращается наибольшее
+ * из чисел, найденных до этого, — число настоящего пути, но не обязательно наибольшее.
+ */
+interface MaxNumberSolver {
+    byte[] solve(NumberGrid grid, SearchBudget budget);
+}
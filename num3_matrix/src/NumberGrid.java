@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * Неизменяемое описание сетки. Клетки пронумерованы row * columns + column; цифры клетки
+ * лежат в digits[digitStart[cell]..digitStart[cell + 1]).
+ */
+final class NumberGrid {
+    private static final int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}}; // вверх, вниз, влево, вправо
+
+    final boolean numeric;
+    final int cellCount;
+    final byte[] digits;
+    final int[] digitStart;
+    // Наибольшая цифра клетки
+    final byte[] maxDigits;
+    // Цвет клетки при шахматной раскраске: соседние клетки разного цвета
+    final byte[] colors;
+    // Соседи клетки и стартовые клетки по убыванию их чисел: хорошее число находится
+    // раньше, и отсечение сильнее. В числовом режиме клетки 0 не стартовые
+    final int[][] neighbors;
+    final int[] startOrder;
+
+    NumberGrid(int[][] matrix, int rows, int columns, boolean numeric) {
+        this.numeric = numeric;
+        cellCount = rows * columns;
+        digitStart = new int[cellCount + 1];
+        StringBuilder all = new StringBuilder();
+        for (int cell = 0; cell < cellCount; cell++) {
+            digitStart[cell] = all.length();
+            all.append(matrix[cell / columns][cell % columns]);
+        }
+        digitStart[cellCount] = all.length();
+        digits = new byte[all.length()];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = (byte) (all.charAt(i) - '0');
+        }
+        maxDigits = new byte[cellCount];
+        colors = new byte[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            colors[cell] = (byte) ((cell / columns + cell % columns) & 1);
+            for (int i = digitStart[cell]; i < digitStart[cell + 1]; i++) {
+                maxDigits[cell] = (byte) Math.max(maxDigits[cell], digits[i]);
+            }
+        }
+
+        neighbors = new int[cellCount][];
+        int[] candidates = new int[directions.length];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int x = cell / columns;
+            int y = cell % columns;
+            int count = 0;
+            for (int[] direction : directions) {
+                int newX = x + direction[0];
+                int newY = y + direction[1];
+                if (newX >= 0 && newX < rows && newY >= 0 && newY < columns) {
+                    candidates[count++] = newX * columns + newY;
+                }
+            }
+            neighbors[cell] = sortedByNumber(Arrays.copyOf(candidates, count));
+        }
+        int[] cells = new int[cellCount];
+        int starts = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (!numeric || digits[digitStart[cell]] != 0) {
+                cells[starts++] = cell;
+            }
+        }
+        startOrder = sortedByNumber(Arrays.copyOf(cells, starts));
+    }
+
+    int length(int cell) {
+        return digitStart[cell + 1] - digitStart[cell];
+    }
+
+    /**
+     * Путь, равный best до позиции from, заведомо проигрывает, если продолжить его клеткой cell:
+     * её цифры меньше цифр best там же. Годится только для лексикографического сравнения.
+     */
+    boolean losesTo(int cell, byte[] best, int from) {
+        if (numeric) {
+            return false;
+        }
+        for (int i = digitStart[cell], j = from; i < digitStart[cell + 1] && j < best.length; i++, j++) {
+            if (digits[i] != best[j]) {
+                return digits[i] < best[j];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * При лексикографическом порядке любое число пути, продолжающегося клеткой a, больше
+     * любого числа того же пути, продолжающегося клеткой b: числа клеток различаются
+     * в какой-то цифре, и у a она больше.
+     */
+    boolean dominates(int a, int b) {
+        if (numeric) {
+            return false;
+        }
+        int mismatch = Arrays.mismatch(digits, digitStart[a], digitStart[a + 1], digits, digitStart[b], digitStart[b + 1]);
+        return mismatch >= 0 && mismatch < Math.min(length(a), length(b))
+                && digits[digitStart[a] + mismatch] > digits[digitStart[b] + mismatch];
+    }
+
+    int compare(byte[] a, byte[] b) {
+        if (numeric && a.length != b.length) {
+            return Integer.compare(a.length, b.length);
+        }
+        return Arrays.compare(a, b);
+    }
+
+    // Клетки по убыванию их чисел как строк
+    private int[] sortedByNumber(int[] cells) {
+        Integer[] boxed = new Integer[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            boxed[i] = cells[i];
+        }
+        Arrays.sort(boxed, (a, b) -> Arrays.compare(
+                digits, digitStart[b], digitStart[b + 1], digits, digitStart[a], digitStart[a + 1]));
+        int[] result = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            result[i] = boxed[i];
+        }
+        return result;
+    }
+}
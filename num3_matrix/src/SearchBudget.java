@@ -0,0 +1,72 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бюджет одного поиска: наибольшее число узлов перебора и крайний срок по System.nanoTime.
+ * Решатели считают узлы у себя и списывают их пачками по {@link #checkInterval()}, время
+ * проверяется при каждом списании, поэтому лимит узлов превышается не больше чем на пачку
+ * в каждом потоке поиска. После исчерпания бюджет остаётся исчерпанным: поиск сворачивается
+ * и возвращает лучшее из найденных чисел. Потокобезопасен.
+ */
+final class SearchBudget {
+    // Узел числового поиска на больших сетках стоит микросекунды, и пачка не должна
+    // заметно растягивать лимит времени
+    private static final int CHECK_INTERVAL = 256;
+
+    private final long maxNodes;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final int checkInterval;
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean exhausted;
+
+    private SearchBudget(long maxNodes, long deadline, boolean hasDeadline) {
+        this.maxNodes = maxNodes;
+        this.deadline = deadline;
+        this.hasDeadline = hasDeadline;
+        this.checkInterval = (int) Math.max(1, Math.min(CHECK_INTERVAL, maxNodes));
+    }
+
+    static SearchBudget unlimited() {
+        return new SearchBudget(Long.MAX_VALUE, 0, false);
+    }
+
+    /**
+     * Бюджет из maxNodes узлов и timeLimitNanos наносекунд, отсчитываемых от текущего момента.
+     */
+    static SearchBudget of(long maxNodes, long timeLimitNanos) {
+        return new SearchBudget(maxNodes, System.nanoTime() + timeLimitNanos, true);
+    }
+
+    /**
+     * Сколько узлов решатель проходит между списаниями.
+     */
+    int checkInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Списывает count узлов; возвращает false, если бюджет исчерпан и поиск пора остановить.
+     */
+    boolean charge(long count) {
+        long total = nodes.addAndGet(count);
+        if (total > maxNodes || hasDeadline && System.nanoTime() - deadline >= 0) {
+            exhausted = true;
+        }
+        return !exhausted;
+    }
+
+    /**
+     * Учитывает узлы, пройденные после последнего списания, когда поиск уже закончен.
+     */
+    void record(long count) {
+        nodes.addAndGet(count);
+    }
+
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    long nodes() {
+        return nodes.get();
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Потоковый обход каталога: найденные файлы сразу отдаются получателю, а не собираются
+ * в список, так что обработка начинается с первого файла и память не зависит от размера
+ * дерева. Каждый каталог читается через DirectoryStream отдельной задачей пула, поэтому
+ * поддеревья обходятся параллельно.
+ *
+ * Получатель может ждать (например, пока освободится место в очереди обработки) — тогда
+ * ждёт и обход. Обход прекращается, когда получатель вернул false или сработал признак
+ * отмены. Символические ссылки на каталоги не обходятся, чтобы не зациклиться; каталоги,
+ * которые не удалось прочитать, пропускаются.
+ */
+final class ImageFileWalker {
+    /**
+     * Получатель найденных файлов; вызывается из потоков обхода одновременно.
+     */
+    interface Sink {
+        // false — файлов больше не нужно
+        boolean accept(File file) throws InterruptedException;
+    }
+
+    private final boolean recursive;
+    private final Predicate<Path> filter;
+    private final BooleanSupplier cancelled;
+    private final Sink sink;
+    private final ExecutorService pool;
+    // Каталоги, поставленные в обход и ещё не дочитанные
+    private final AtomicInteger pendingDirectories = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicLong found = new AtomicLong();
+    private volatile boolean stopped;
+
+    private ImageFileWalker(boolean recursive, Predicate<Path> filter, BooleanSupplier cancelled, Sink sink,
+                            int threads) {
+        this.recursive = recursive;
+        this.filter = filter;
+        this.cancelled = cancelled;
+        this.sink = sink;
+        this.pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "image-walker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Обходит root (с подкаталогами, если recursive) и отдаёт sink файлы, прошедшие filter.
+     * Возвращает, когда обход закончен или остановлен, число принятых файлов.
+     */
+    static long walk(Path root, boolean recursive, int threads, Predicate<Path> filter, BooleanSupplier cancelled,
+                     Sink sink) throws InterruptedException {
+        ImageFileWalker walker = new ImageFileWalker(recursive, filter, cancelled, sink, threads);
+        try {
+            walker.schedule(root);
+            walker.done.await();
+        } finally {
+            walker.stopped = true;
+            walker.pool.shutdownNow();
+        }
+        return walker.found.get();
+    }
+
+    private void schedule(Path directory) {
+        pendingDirectories.incrementAndGet();
+        pool.execute(() -> {
+            try {
+                scan(directory);
+            } finally {
+                if (pendingDirectories.decrementAndGet() == 0) {
+                    done.countDown();
+                }
+            }
+        });
+    }
+
+    private void scan(Path directory) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (stopped || cancelled.getAsBoolean()) {
+                    return;
+                }
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    if (recursive) {
+                        schedule(entry);
+                    }
+                } else if (filter.test(entry)) {
+                    if (!sink.accept(entry.toFile())) {
+                        stopped = true;
+                        return;
+                    }
+                    found.incrementAndGet();
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            // Недоступный каталог пропускается
+        } catch (InterruptedException e) {
+            stopped = true;
+        } catch (RuntimeException e) {
+            stopped = true;
+            System.err.println("Ошибка обхода каталога " + directory + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,308 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Конвейер обработки изображений из трёх стадий, у каждой свой пул потоков: чтение
+ * и декодирование, преобразование, кодирование и запись. Стадии связаны очередями
+ * ограниченной длины: если следующая стадия не успевает, предыдущая ждёт, так что чтение
+ * и запись файлов идут одновременно с вычислениями, но не убегают вперёд них.
+ *
+ * Память ограничена бюджетом: перед декодированием размер изображения читается
+ * из заголовка файла, и читатель ждёт, пока в бюджете не освободится место под исходное
+ * изображение и результат (оценка {@link Transform#memory}); место освобождается после
+ * записи. Изображение больше всего бюджета обрабатывается, когда остальные уже записаны.
+ *
+ * Результат пишется во временный файл рядом и затем заменяет исходный, поэтому прерванная
+ * запись не оставляет обрезанного изображения, а запись в файл с жёсткими ссылками не меняет
+ * остальные ссылки.
+ *
+ * Файлы подаются через {@link #submit} и {@link #finish}, ошибки отдельных файлов печатаются
+ * и не останавливают остальные.
+ */
+final class ImagePipeline {
+    /**
+     * Преобразование изображения на средней стадии.
+     */
+    interface Transform {
+        BufferedImage apply(BufferedImage image);
+
+        // Байты памяти на исходное изображение width x height вместе с результатом
+        long memory(int width, int height);
+    }
+
+    /**
+     * Получатель записанных файлов; вызывается из потоков записи одновременно.
+     */
+    interface Listener {
+        void written(File file) throws IOException;
+    }
+
+    // Элемент очередей между стадиями; END — признак конца работы для одного потока стадии
+    private record Item(File file, BufferedImage image, int permits) {
+    }
+
+    private static final File END_OF_FILES = new File("");
+    private static final Item END = new Item(null, null, 0);
+
+    private final Transform transform;
+    private final Listener listener;
+    private final String doneMessage;
+    private final BlockingQueue<File> files;
+    private final BlockingQueue<Item> decoded;
+    private final BlockingQueue<Item> transformed;
+    // Бюджет памяти в КиБ
+    private final Semaphore memory;
+    private final int memoryPermits;
+    private final ExecutorService readers;
+    private final ExecutorService transformers;
+    private final ExecutorService writers;
+    private final AtomicInteger activeReaders;
+    private final AtomicInteger activeTransformers;
+    private final int transformerThreads;
+    private final int writerThreads;
+    private volatile boolean cancelled;
+
+    /**
+     * Создаёт и запускает конвейер.
+     *
+     * @param listener      получатель записанных файлов или null
+     * @param doneMessage   начало сообщения об успешно записанном файле
+     * @param queueCapacity длина каждой из очередей между стадиями
+     * @param memoryBudget  бюджет памяти на изображения в обработке, в байтах
+     */
+    ImagePipeline(Transform transform, Listener listener, String doneMessage, int readerThreads,
+                  int transformerThreads, int writerThreads, int queueCapacity, long memoryBudget) {
+        if (readerThreads <= 0 || transformerThreads <= 0 || writerThreads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Число потоков и длина очередей должны быть положительными");
+        }
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Бюджет памяти должен быть положительным");
+        }
+        this.transform = transform;
+        this.listener = listener;
+        this.doneMessage = doneMessage;
+        this.transformerThreads = transformerThreads;
+        this.writerThreads = writerThreads;
+        files = new ArrayBlockingQueue<>(queueCapacity);
+        decoded = new ArrayBlockingQueue<>(queueCapacity);
+        transformed = new ArrayBlockingQueue<>(queueCapacity);
+        memoryPermits = (int) Math.max(1, Math.min(memoryBudget / 1024, Integer.MAX_VALUE));
+        memory = new Semaphore(memoryPermits);
+        activeReaders = new AtomicInteger(readerThreads);
+        activeTransformers = new AtomicInteger(transformerThreads);
+
+        readers = Executors.newFixedThreadPool(readerThreads);
+        transformers = Executors.newFixedThreadPool(transformerThreads);
+        writers = Executors.newFixedThreadPool(writerThreads);
+        for (int i = 0; i < readerThreads; i++) {
+            readers.execute(this::readLoop);
+        }
+        for (int i = 0; i < transformerThreads; i++) {
+            transformers.execute(this::transformLoop);
+        }
+        for (int i = 0; i < writerThreads; i++) {
+            writers.execute(this::writeLoop);
+        }
+        // Потоки завершатся, когда их циклы дойдут до конца работы
+        readers.shutdown();
+        transformers.shutdown();
+        writers.shutdown();
+    }
+
+    /**
+     * Ставит файл в очередь на чтение; ждёт, если очередь заполнена. Возвращает false,
+     * если конвейер отменён и файл не поставлен.
+     */
+    boolean submit(File file) throws InterruptedException {
+        return enqueue(file);
+    }
+
+    /**
+     * Файлов больше не будет; после обработки поставленных конвейер останавливается.
+     */
+    void finish() throws InterruptedException {
+        enqueue(END_OF_FILES);
+    }
+
+    // После отмены читателей нет, и заполненная очередь не освободится: ожидание
+    // периодически проверяет отмену
+    private boolean enqueue(File file) throws InterruptedException {
+        while (!cancelled) {
+            if (files.offer(file, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ждёт, пока все поставленные файлы не будут обработаны или конвейер не будет отменён.
+     */
+    void awaitCompletion() throws InterruptedException {
+        readers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        transformers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Прерывает все стадии; изображения в очередях не записываются.
+     */
+    void cancel() {
+        cancelled = true;
+        readers.shutdownNow();
+        transformers.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    // Ошибка одного файла, в том числе OutOfMemoryError (бюджет памяти — только оценка), теряет
+    // только этот файл. Стадия при любом выходе отдаёт дальше признак конца и отпускает память
+    // своих изображений, иначе следующая стадия и awaitCompletion ждали бы вечно
+    private void readLoop() {
+        try {
+            for (File file = files.take(); file != END_OF_FILES; file = files.take()) {
+                Item item = decode(file);
+                if (item != null) {
+                    pass(decoded, item);
+                }
+            }
+            // Признак конца остаётся в очереди для остальных читателей
+            files.put(END_OF_FILES);
+        } catch (InterruptedException e) {
+            // Отмена: конвейер останавливается целиком
+        } finally {
+            if (activeReaders.decrementAndGet() == 0) {
+                end(decoded, transformerThreads);
+            }
+        }
+    }
+
+    private Item decode(File file) throws InterruptedException {
+        int acquired = 0;
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> imageReaders = input == null ? null : ImageIO.getImageReaders(input);
+            if (imageReaders == null || !imageReaders.hasNext()) {
+                throw new IOException("Не удалось прочитать изображение");
+            }
+            ImageReader reader = imageReaders.next();
+            try {
+                reader.setInput(input, true, true);
+                int permits = permits(transform.memory(reader.getWidth(0), reader.getHeight(0)));
+                memory.acquire(permits);
+                acquired = permits;
+                BufferedImage image = reader.read(0);
+                return new Item(file, image, acquired);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            memory.release(acquired);
+            reportError(file, e);
+            return null;
+        }
+    }
+
+    private void transformLoop() {
+        try {
+            for (Item item = decoded.take(); item != END; item = decoded.take()) {
+                BufferedImage result;
+                try {
+                    result = transform.apply(item.image());
+                } catch (RuntimeException | Error e) {
+                    memory.release(item.permits());
+                    reportError(item.file(), e);
+                    continue;
+                }
+                pass(transformed, new Item(item.file(), result, item.permits()));
+            }
+        } catch (InterruptedException e) {
+            // Отмена
+        } finally {
+            if (activeTransformers.decrementAndGet() == 0) {
+                end(transformed, writerThreads);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            for (Item item = transformed.take(); item != END; item = transformed.take()) {
+                try {
+                    write(item);
+                    System.out.println(doneMessage + item.file().getPath());
+                    if (listener != null) {
+                        listener.written(item.file());
+                    }
+                } catch (IOException | RuntimeException | Error e) {
+                    reportError(item.file(), e);
+                } finally {
+                    memory.release(item.permits());
+                }
+            }
+        } catch (InterruptedException e) {
+            // Отмена
+        }
+    }
+
+    // Передаёт изображение следующей стадии; если не удалось, его память отпускается
+    private void pass(BlockingQueue<Item> queue, Item item) throws InterruptedException {
+        boolean passed = false;
+        try {
+            queue.put(item);
+            passed = true;
+        } finally {
+            if (!passed) {
+                memory.release(item.permits());
+            }
+        }
+    }
+
+    // Признак конца для каждого потока следующей стадии; после отмены следующая стадия уже
+    // остановлена, и заполненная очередь не освободится
+    private void end(BlockingQueue<Item> queue, int threads) {
+        try {
+            for (int i = 0; i < threads && !cancelled; i++) {
+                queue.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void write(Item item) throws IOException {
+        Path target = item.file().toPath();
+        String format = ImageProcessor.getFormatName(item.file().getName());
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "." + target.getFileName(), ".tmp");
+        try {
+            if (!ImageIO.write(item.image(), format, temp.toFile())) {
+                throw new IOException("Нет кодировщика формата " + format + " для такого изображения");
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Изображение больше всего бюджета занимает его целиком, иначе оно не дождалось бы места
+    private int permits(long bytes) {
+        return (int) Math.max(1, Math.min((bytes + 1023) / 1024, memoryPermits));
+    }
+
+    private static void reportError(File file, Throwable e) {
+        System.err.println("Ошибка обработки файла " + file.getPath() + ": " + e.getMessage());
+    }
+}
@@ -7,19 +7,34 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ImageProcessor {
     private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png"};
+    private static final Set<String> SWITCHES = Set.of("/sub", "/inc", "/mem", "/f", "/s", "/n", "/r", "/c");
+    // Чтение и запись файлов в основном ждут диска, вычисления идут на остальных потоках конвейера
+    private static final int READER_THREADS = 2;
+    private static final int WRITER_THREADS = 2;
+    // Каталоги читаются параллельно: чтение каталога в основном ждёт диска
+    private static final int WALKER_THREADS = 4;
+    private static final int MAX_TASKS_PER_THREAD = 4;
+    // Оценка памяти декодированного изображения: до 4 байт на пиксель
+    private static final int BYTES_PER_PIXEL = 4;
+    // Журнал /inc в исходном каталоге
+    private static final String MANIFEST_NAME = ".imageprocessor-manifest";
     private static final AtomicBoolean cancellationRequested = new AtomicBoolean(false);
-    private static ExecutorService executorService;
+    private static final AtomicLong skippedFiles = new AtomicLong();
+    // Пул задач /r и /c; создаётся в runTasks, /s и /n работают на пулах конвейера
+    private static volatile ExecutorService executorService;
+    private static volatile ImagePipeline pipeline;
 
     public static void main(String[] args) {
         if (args.length < 2) {
@@ -31,15 +46,22 @@ public class ImageProcessor {
         // Парсинг аргументов
         String sourceDir = args[0];
         boolean recursive = false;
+        boolean incremental = false;
         String operation = null;
         String operationParam = null;
-        int paramIndex = -1;
+        // По умолчанию изображениям в обработке отдаётся половина памяти JVM
+        long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+        // null — ближайший сосед; фильтры заметно медленнее, поэтому только по /f
+        Resampler.Filter filter = null;
 
         for (int i = 1; i < args.length; i++) {
             switch (args[i].toLowerCase()) {
                 case "/sub":
                     recursive = true;
                     break;
+                case "/inc":
+                    incremental = true;
+                    break;
                 case "/s":
                 case "/n":
                 case "/r":
@@ -50,8 +72,57 @@ public class ImageProcessor {
                         return;
                     }
                     operation = args[i].toLowerCase();
-                    paramIndex = i + 1;
+                    if (operation.equals("/s") || operation.equals("/c")) {
+                        operationParam = optionValue(args, i++);
+                        if (operationParam == null) {
+                            System.out.println("Не указан обязательный параметр для операции " + operation);
+                            printUsage();
+                            return;
+                        }
+                    }
+                    break;
+                case "/mem":
+                    String memory = optionValue(args, i++);
+                    if (memory == null) {
+                        System.out.println("Не указан размер памяти для /mem");
+                        printUsage();
+                        return;
+                    }
+                    try {
+                        memoryBudget = Long.parseLong(memory) * 1024 * 1024;
+                    } catch (NumberFormatException e) {
+                        memoryBudget = 0;
+                    }
+                    if (memoryBudget <= 0) {
+                        System.out.println("Размер памяти должен быть положительным числом мегабайт");
+                        printUsage();
+                        return;
+                    }
+                    break;
+                case "/f":
+                    String filterName = optionValue(args, i++);
+                    if (filterName == null) {
+                        System.out.println("Не указан фильтр для /f");
+                        printUsage();
+                        return;
+                    }
+                    filterName = filterName.toLowerCase();
+                    if (filterName.equals("nearest")) {
+                        filter = null;
+                        break;
+                    }
+                    try {
+                        filter = Resampler.Filter.valueOf(filterName.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Неизвестный фильтр: " + args[i]);
+                        printUsage();
+                        return;
+                    }
                     break;
+                default:
+                    System.out.println("Неизвестный аргумент: " + args[i]);
+                    printUsage();
+                    return;
             }
         }
 
@@ -61,45 +132,73 @@ public class ImageProcessor {
             return;
         }
 
-        if (operation.equals("/s") || operation.equals("/c")) {
-            if (paramIndex >= args.length) {
-                System.out.println("Не указан обязательный параметр для операции " + operation);
+        if (incremental && operation.equals("/r")) {
+            System.out.println("Режим /inc применяется только к /s, /n и /c");
+            printUsage();
+            return;
+        }
+
+        if (operation.equals("/s")) {
+            double scaleFactor;
+            try {
+                scaleFactor = Double.parseDouble(operationParam);
+            } catch (NumberFormatException e) {
+                scaleFactor = 0;
+            }
+            if (!(scaleFactor > 0)) {
+                System.out.println("Коэффициент масштабирования должен быть положительным числом");
                 printUsage();
                 return;
             }
-            operationParam = args[paramIndex];
         }
 
-        int processors = Runtime.getRuntime().availableProcessors();
-        executorService = Executors.newFixedThreadPool(processors);
-
         try {
-            processImages(sourceDir, recursive, operation, operationParam);
+            processImages(sourceDir, recursive, operation, operationParam, filter, memoryBudget, incremental);
         } catch (InterruptedException e) {
             System.out.println("Обработка прервана");
-        } finally {
-            executorService.shutdown();
         }
     }
 
+    // Значение ключа args[index] или null, если его нет: следующий аргумент — сам ключ
+    // (например, "/c /inc <каталог>" — пропущен целевой каталог, а не каталог "/inc")
+    private static String optionValue(String[] args, int index) {
+        if (index + 1 >= args.length || SWITCHES.contains(args[index + 1].toLowerCase())) {
+            return null;
+        }
+        return args[index + 1];
+    }
+
     private static void printUsage() {
         System.out.println("Использование:");
-        System.out.println("java ImageProcessor <исходный_каталог> [/sub] [/s <коэффициент> | /n | /r | /c <целевой_каталог>]");
+        System.out.println("java ImageProcessor <исходный_каталог> [/sub] [/inc] [/mem <мегабайты>] [/f <фильтр>] "
+                + "[/s <коэффициент> | /n | /r | /c <целевой_каталог>]");
         System.out.println("  /sub - рекурсивный обход подкаталогов");
+        System.out.println("  /inc - пропускать файлы, не изменившиеся с прошлого запуска с /inc (журнал "
+                + MANIFEST_NAME + " в исходном каталоге); /c вместо копий одинаковых файлов создаёт жёсткие ссылки");
+        System.out.println("  /mem - память на изображения в обработке для /s и /n (по умолчанию половина памяти JVM)");
+        System.out.println("  /f - фильтр для /s: nearest (по умолчанию), bilinear, bicubic или lanczos");
         System.out.println("  /s - растянуть изображение (требуется коэффициент)");
         System.out.println("  /n - создать негатив изображения");
         System.out.println("  /r - удалить изображение");
         System.out.println("  /c - скопировать изображение (требуется целевой каталог)");
     }
 
-    private static void processImages(String sourceDir, boolean recursive, String operation, String operationParam)
+    private static void processImages(String sourceDir, boolean recursive, String operation, String operationParam,
+                                      Resampler.Filter filter, long memoryBudget, boolean incremental)
             throws InterruptedException {
         Thread cancellationThread = new Thread(() -> {
             try (Scanner scanner = new Scanner(System.in)) {
                 while (!cancellationRequested.get()) {
                     if (System.in.available() > 0 && scanner.nextLine().equalsIgnoreCase("esc")) {
                         cancellationRequested.set(true);
-                        executorService.shutdownNow();
+                        ExecutorService executor = executorService;
+                        if (executor != null) {
+                            executor.shutdownNow();
+                        }
+                        ImagePipeline running = pipeline;
+                        if (running != null) {
+                            running.cancel();
+                        }
                         System.out.println("Запрошена отмена операции...");
                     }
                 }
@@ -110,40 +209,39 @@ public class ImageProcessor {
         cancellationThread.setDaemon(true);
         cancellationThread.start();
 
-        List<File> imageFiles = new ArrayList<>();
-        collectImageFiles(new File(sourceDir), recursive, imageFiles);
-
-        if (imageFiles.isEmpty()) {
-            System.out.println("Изображения не найдены");
-            return;
-        }
-
-        System.out.println("Найдено изображений: " + imageFiles.size());
         System.out.println("Нажмите ESC для отмены операции...");
 
-        List<Future<?>> futures = new ArrayList<>();
-        for (File file : imageFiles) {
-            if (cancellationRequested.get()) break;
-
-            futures.add(executorService.submit(() -> {
+        ProcessingManifest manifest = incremental
+                ? ProcessingManifest.load(Paths.get(sourceDir).resolve(MANIFEST_NAME)) : null;
+        ImagePipeline.Transform transform = createTransform(operation, operationParam, filter);
+        long found;
+        try {
+            if (transform != null) {
+                String doneMessage = operation.equals("/s") ? "Изображение масштабировано: " : "Создан негатив: ";
+                found = runPipeline(sourceDir, recursive, transform, doneMessage, memoryBudget, manifest,
+                        operationKey(operation, operationParam, filter));
+            } else {
+                found = runTasks(sourceDir, recursive, operation, operationParam, manifest);
+            }
+        } finally {
+            // Обработанное до отмены или ошибки тоже запоминается
+            if (manifest != null) {
                 try {
-                    processFile(file, operation, operationParam);
+                    manifest.save();
                 } catch (IOException e) {
-                    System.err.println("Ошибка обработки файла " + file.getPath() + ": " + e.getMessage());
-                }
-            }));
-        }
-
-        for (Future<?> future : futures) {
-            try {
-                future.get();
-            } catch (Exception e) {
-                if (!cancellationRequested.get()) {
-                    System.err.println("Ошибка при выполнении задачи: " + e.getMessage());
+                    System.err.println("Не удалось сохранить журнал: " + e.getMessage());
                 }
             }
         }
 
+        if (found == 0 && !cancellationRequested.get()) {
+            System.out.println("Изображения не найдены");
+            return;
+        }
+        System.out.println("Найдено изображений: " + found);
+        if (manifest != null) {
+            System.out.println("Пропущено без изменений: " + skippedFiles.get());
+        }
         if (cancellationRequested.get()) {
             System.out.println("Операция отменена пользователем");
         } else {
@@ -151,101 +249,195 @@ public class ImageProcessor {
         }
     }
 
-    private static void collectImageFiles(File dir, boolean recursive, List<File> imageFiles) {
-        if (cancellationRequested.get()) return;
+    /**
+     * Преобразование для операций, которые декодируют изображение (/s и /n), иначе null.
+     */
+    private static ImagePipeline.Transform createTransform(String operation, String operationParam,
+                                                           Resampler.Filter filter) {
+        switch (operation) {
+            case "/s":
+                double scaleFactor = Double.parseDouble(operationParam);
+                // При уменьшении больше чем вдвое фильтр держит промежуточные уменьшенные вдвое копии,
+                // вместе не больше трети исходного
+                double copies = 1 + scaleFactor * scaleFactor + (filter != null && scaleFactor <= 0.5 ? 1.0 / 3 : 0);
+                return new ImagePipeline.Transform() {
+                    @Override
+                    public BufferedImage apply(BufferedImage image) {
+                        return scale(image, scaleFactor, filter);
+                    }
+
+                    @Override
+                    public long memory(int width, int height) {
+                        return (long) ((double) width * height * BYTES_PER_PIXEL * copies);
+                    }
+                };
+            case "/n":
+                return new ImagePipeline.Transform() {
+                    // Прочитанное изображение больше не нужно, поэтому инвертируется на месте, без копии
+                    @Override
+                    public BufferedImage apply(BufferedImage image) {
+                        NegativeFilter.invert(image);
+                        return image;
+                    }
+
+                    @Override
+                    public long memory(int width, int height) {
+                        return (long) width * height * BYTES_PER_PIXEL;
+                    }
+                };
+            default:
+                return null;
+        }
+    }
+
+    // Операция с параметрами, как она записывается в журнал: файл, обработанный иначе, обрабатывается заново
+    private static String operationKey(String operation, String operationParam, Resampler.Filter filter) {
+        if (!operation.equals("/s")) {
+            return operation;
+        }
+        return operation + " " + Double.parseDouble(operationParam) + " "
+                + (filter == null ? "nearest" : filter.name().toLowerCase());
+    }
+
+    // Чтение, преобразование и запись идут на отдельных пулах одновременно; файлы поступают
+    // в конвейер по мере обхода, а заполненная очередь конвейера придерживает обход
+    private static long runPipeline(String sourceDir, boolean recursive, ImagePipeline.Transform transform,
+                                    String doneMessage, long memoryBudget, ProcessingManifest manifest,
+                                    String operationKey) throws InterruptedException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        // Результат заменяет исходный файл, поэтому в журнал попадает его новое состояние
+        ImagePipeline.Listener listener = manifest == null ? null : file -> manifest.record(file.toPath(),
+                operationKey, file.toPath(), ProcessingManifest.hash(file.toPath()));
+        pipeline = new ImagePipeline(transform, listener, doneMessage, READER_THREADS, processors, WRITER_THREADS,
+                processors, memoryBudget);
+        if (cancellationRequested.get()) {
+            pipeline.cancel();
+        }
+        long found = walkImages(sourceDir, recursive, file -> isUnchanged(manifest, file.toPath(), operationKey,
+                file.toPath()) || pipeline.submit(file));
+        pipeline.finish();
+        pipeline.awaitCompletion();
+        return found;
+    }
 
-        File[] files = dir.listFiles();
-        if (files == null) return;
+    // Операции над файлами целиком: по задаче на файл, но не больше MAX_TASKS_PER_THREAD задач
+    // на поток пула сразу, чтобы очередь пула не росла вместе с деревом каталогов
+    private static long runTasks(String sourceDir, boolean recursive, String operation, String operationParam,
+                                 ProcessingManifest manifest) throws InterruptedException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(processors);
+        executorService = executor;
+        if (cancellationRequested.get()) {
+            executor.shutdownNow();
+        }
+        Semaphore inFlight = new Semaphore(MAX_TASKS_PER_THREAD * processors);
+        long found;
+        try {
+            found = walkImages(sourceDir, recursive, file -> {
+                // Отменённые задачи пул выбрасывает, не освобождая мест, поэтому ожидание проверяет отмену
+                while (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    if (cancellationRequested.get()) {
+                        return false;
+                    }
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            processFile(file, operation, operationParam, manifest);
+                        } catch (IOException e) {
+                            System.err.println("Ошибка обработки файла " + file.getPath() + ": " + e.getMessage());
+                        } catch (RuntimeException e) {
+                            System.err.println("Ошибка при выполнении задачи: " + e.getMessage());
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Пул остановлен отменой
+                    inFlight.release();
+                    return false;
+                }
+                return true;
+            });
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return found;
+    }
 
-        for (File file : files) {
-            if (cancellationRequested.get()) return;
+    private static long walkImages(String sourceDir, boolean recursive, ImageFileWalker.Sink sink)
+            throws InterruptedException {
+        return ImageFileWalker.walk(Paths.get(sourceDir), recursive, WALKER_THREADS,
+                ImageProcessor::isImageFile, cancellationRequested::get, sink);
+    }
 
-            if (file.isDirectory() && recursive) {
-                collectImageFiles(file, true, imageFiles);
-            } else if (isImageFile(file)) {
-                imageFiles.add(file);
+    // true (и файл учтён как пропущенный), если журнал есть и файл с прошлого запуска не менялся;
+    // ошибка чтения журнала или файла — повод обработать файл заново
+    private static boolean isUnchanged(ProcessingManifest manifest, Path source, String operationKey, Path output) {
+        if (manifest == null) {
+            return false;
+        }
+        try {
+            if (manifest.isUpToDate(source, operationKey, output)) {
+                skippedFiles.incrementAndGet();
+                return true;
             }
+        } catch (IOException e) {
+            // Обрабатывается заново
         }
+        return false;
     }
 
-    private static boolean isImageFile(File file) {
-        if (!file.isFile()) return false;
-
-        String name = file.getName().toLowerCase();
+    private static boolean isImageFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
         for (String ext : IMAGE_EXTENSIONS) {
             if (name.endsWith(ext)) {
-                return true;
+                return Files.isRegularFile(path);
             }
         }
         return false;
     }
 
-    private static void processFile(File file, String operation, String operationParam) throws IOException {
+    private static void processFile(File file, String operation, String operationParam, ProcessingManifest manifest)
+            throws IOException {
         switch (operation) {
-            case "/s":
-                double scaleFactor = Double.parseDouble(operationParam);
-                scaleImage(file, scaleFactor);
-                break;
-            case "/n":
-                createNegativeImage(file);
-                break;
             case "/r":
                 deleteImage(file);
                 break;
             case "/c":
-                copyImage(file, operationParam);
+                copyImage(file, operationParam, manifest);
                 break;
         }
     }
 
-    private static void scaleImage(File file, double scaleFactor) throws IOException {
-        if (scaleFactor <= 0) {
-            throw new IllegalArgumentException("Коэффициент масштабирования должен быть положительным");
-        }
-
-        BufferedImage originalImage = ImageIO.read(file);
-        if (originalImage == null) {
-            throw new IOException("Не удалось прочитать изображение");
+    /**
+     * Масштабирование с фильтром filter; null — ближайший сосед через Java2D, быстро, но
+     * с лесенкой при увеличении и муаром при уменьшении. Стороны не меньше пикселя.
+     */
+    static BufferedImage scale(BufferedImage originalImage, double scaleFactor, Resampler.Filter filter) {
+        int newWidth = Math.max(1, (int) (originalImage.getWidth() * scaleFactor));
+        int newHeight = Math.max(1, (int) (originalImage.getHeight() * scaleFactor));
+        if (filter != null) {
+            return Resampler.resize(originalImage, newWidth, newHeight, filter);
         }
 
-        int newWidth = (int) (originalImage.getWidth() * scaleFactor);
-        int newHeight = (int) (originalImage.getHeight() * scaleFactor);
-
-        BufferedImage scaledImage = new BufferedImage(newWidth, newHeight, originalImage.getType());
+        // Тип TYPE_CUSTOM в конструктор BufferedImage не передать, поэтому по цветовой модели
+        BufferedImage scaledImage = Resampler.createCompatible(originalImage, newWidth, newHeight);
         Graphics2D g2d = scaledImage.createGraphics();
         g2d.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
         g2d.dispose();
-
-        String formatName = getFormatName(file.getName());
-        ImageIO.write(scaledImage, formatName, file);
-        System.out.println("Изображение масштабировано: " + file.getPath());
+        return scaledImage;
     }
 
-    private static void createNegativeImage(File file) throws IOException {
-        BufferedImage originalImage = ImageIO.read(file);
-        if (originalImage == null) {
-            throw new IOException("Не удалось прочитать изображение");
-        }
-
-        BufferedImage negativeImage = new BufferedImage(
-                originalImage.getWidth(),
-                originalImage.getHeight(),
-                originalImage.getType());
-
-        for (int y = 0; y < originalImage.getHeight(); y++) {
-            for (int x = 0; x < originalImage.getWidth(); x++) {
-                int rgb = originalImage.getRGB(x, y);
-                int r = 255 - ((rgb >> 16) & 0xFF);
-                int g = 255 - ((rgb >> 8) & 0xFF);
-                int b = 255 - (rgb & 0xFF);
-                int newRgb = (r << 16) | (g << 8) | b;
-                negativeImage.setRGB(x, y, newRgb);
-            }
-        }
-
-        String formatName = getFormatName(file.getName());
-        ImageIO.write(negativeImage, formatName, file);
-        System.out.println("Создан негатив: " + file.getPath());
+    /**
+     * Негатив в новом изображении того же типа; исходное не меняется.
+     */
+    static BufferedImage negative(BufferedImage originalImage) {
+        BufferedImage negativeImage = new BufferedImage(originalImage.getColorModel(),
+                originalImage.copyData(null), originalImage.isAlphaPremultiplied(), null);
+        NegativeFilter.invert(negativeImage);
+        return negativeImage;
     }
 
     private static void deleteImage(File file) throws IOException {
@@ -255,7 +447,7 @@ public class ImageProcessor {
         System.out.println("Файл удален: " + file.getPath());
     }
 
-    private static void copyImage(File file, String targetDir) throws IOException {
+    private static void copyImage(File file, String targetDir, ProcessingManifest manifest) throws IOException {
         Path targetPath = Paths.get(targetDir);
         if (!Files.exists(targetPath)) {
             Files.createDirectories(targetPath);
@@ -263,11 +455,41 @@ public class ImageProcessor {
 
         Path sourcePath = file.toPath();
         Path destinationPath = targetPath.resolve(file.getName());
-        Files.copy(sourcePath, destinationPath, StandardCopyOption.REPLACE_EXISTING);
-        System.out.println("Файл скопирован: " + sourcePath + " -> " + destinationPath);
+        if (manifest == null) {
+            Files.copy(sourcePath, destinationPath, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Файл скопирован: " + sourcePath + " -> " + destinationPath);
+            return;
+        }
+
+        if (isUnchanged(manifest, sourcePath, "/c", destinationPath)) {
+            return;
+        }
+        String hash = ProcessingManifest.hash(sourcePath);
+        Path copy = manifest.findCopy(hash);
+        if (copy != null && !copy.equals(destinationPath.toAbsolutePath().normalize())
+                && linkCopy(copy, destinationPath)) {
+            System.out.println("Файл связан с копией того же содержимого: " + sourcePath + " -> " + destinationPath
+                    + " = " + copy);
+        } else {
+            Files.copy(sourcePath, destinationPath, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Файл скопирован: " + sourcePath + " -> " + destinationPath);
+        }
+        manifest.record(sourcePath, "/c", destinationPath, hash);
+    }
+
+    // Жёсткая ссылка destination на copy; false, если файловая система их не поддерживает
+    // или copy на другом томе — тогда файл копируется
+    private static boolean linkCopy(Path copy, Path destination) {
+        try {
+            Files.deleteIfExists(destination);
+            Files.createLink(destination, copy);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
     }
 
-    private static String getFormatName(String fileName) {
+    static String getFormatName(String fileName) {
         String lower = fileName.toLowerCase();
         if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "jpg";
         if (lower.endsWith(".png")) return "png";
@@ -0,0 +1,111 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Замер производительности операций ImageProcessor над изображениями в памяти
+ * (без чтения и записи файлов). Использование: java ImageProcessorBenchmark [мегапиксели...]
+ *
+ * Изображения квадратные, типов TYPE_INT_RGB, TYPE_3BYTE_BGR (так ImageIO обычно
+ * декодирует JPEG) и TYPE_4BYTE_ABGR (PNG с альфой). Негатив замеряется в копию
+ * и на месте, как при обработке файла, масштабирование — ближайшим соседом и каждым фильтром
+ * Resampler. Печатается медиана времени операции и мегапиксели в секунду.
+ */
+public class ImageProcessorBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 500;
+    private static final int[] DEFAULT_MEGAPIXELS = {1, 4, 16};
+    private static final double[] SCALE_FACTORS = {0.5, 2.0};
+    private static final int[] IMAGE_TYPES = {
+            BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR};
+
+    // Результаты операций пишутся сюда, чтобы JIT не выбросил вычисления
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int[] megapixels = DEFAULT_MEGAPIXELS;
+        if (args.length > 0) {
+            megapixels = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                megapixels[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        Random random = new Random(42);
+        for (int mp : megapixels) {
+            int side = (int) Math.sqrt(mp * 1_000_000.0);
+            for (int type : IMAGE_TYPES) {
+                String typeName = typeName(type);
+                BufferedImage image = randomImage(random, side, type);
+
+                measure("negative " + mp + " Мп " + typeName, mp, () -> ImageProcessor.negative(image));
+                measure("negative in place " + mp + " Мп " + typeName, mp, () -> {
+                    NegativeFilter.invert(image);
+                    return image;
+                });
+                for (double factor : SCALE_FACTORS) {
+                    measure("scale x" + factor + " nearest " + mp + " Мп " + typeName, mp,
+                            () -> ImageProcessor.scale(image, factor, null));
+                    for (Resampler.Filter filter : Resampler.Filter.values()) {
+                        String filterName = filter.name().toLowerCase();
+                        measure("scale x" + factor + " " + filterName + " " + mp + " Мп " + typeName, mp,
+                                () -> ImageProcessor.scale(image, factor, filter));
+                    }
+                }
+            }
+        }
+    }
+
+    private static String typeName(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_INT_RGB:
+                return "INT_RGB";
+            case BufferedImage.TYPE_3BYTE_BGR:
+                return "3BYTE_BGR";
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                return "4BYTE_ABGR";
+            default:
+                return "TYPE_" + type;
+        }
+    }
+
+    private static BufferedImage randomImage(Random random, int side, int type) {
+        BufferedImage image = new BufferedImage(side, side, type);
+        int[] row = new int[side];
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                row[x] = random.nextInt();
+            }
+            image.setRGB(0, y, side, 1, row, 0, side);
+        }
+        return image;
+    }
+
+    private static void measure(String name, double megapixels, Supplier<Object> operation) {
+        List<Double> nanosPerOp = new ArrayList<>();
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURE_ITERATIONS; iteration++) {
+            long operations = 0;
+            long start = System.nanoTime();
+            long deadline = start + ITERATION_MILLIS * 1_000_000;
+            long now;
+            do {
+                sink = operation.get();
+                operations++;
+                now = System.nanoTime();
+            } while (now < deadline);
+            if (iteration >= WARMUP_ITERATIONS) {
+                nanosPerOp.add((double) (now - start) / operations);
+            }
+        }
+
+        Collections.sort(nanosPerOp);
+        double median = nanosPerOp.get(nanosPerOp.size() / 2);
+        System.out.printf("%-44s %12.3f мс/оп  [%.3f .. %.3f]  %8.1f Мп/с%n", name, median / 1e6,
+                nanosPerOp.get(0) / 1e6, nanosPerOp.get(nanosPerOp.size() - 1) / 1e6,
+                megapixels / (median / 1e9));
+    }
+}
@@ -0,0 +1,161 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Негатив изображения на месте: цветовые составляющие заменяются на 255 - c, альфа-канал
+ * и тип изображения не меняются.
+ *
+ * Цвета по 8 бит в DataBufferByte (3BYTE_BGR, 4BYTE_ABGR, BYTE_GRAY и такие же раскладки
+ * TYPE_CUSTOM) и упакованные в int пиксели DataBufferInt (INT_RGB, INT_ARGB, INT_BGR)
+ * инвертируются прямо в массиве данных растра: XOR с маской цветовых бит, без пересчёта
+ * через цветовую модель. Остальные изображения (палитровые, 16-битные, с премультиплицированной
+ * альфой) обрабатываются построчно через getRGB/setRGB. Большие изображения делятся
+ * на полосы строк, которые обрабатываются параллельно на общем ForkJoinPool.
+ */
+final class NegativeFilter {
+    // Изображения меньше этого обрабатываются в одном потоке: запуск задач дороже работы
+    private static final int PARALLEL_MIN_PIXELS = 1 << 20;
+    private static final int PIXELS_PER_BAND = 1 << 18;
+
+    private NegativeFilter() {
+    }
+
+    static void invert(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        ColorModel colorModel = image.getColorModel();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer buffer = raster.getDataBuffer();
+        RowInverter inverter;
+        if (colorModel.isAlphaPremultiplied()) {
+            inverter = rgbRows(image);
+        } else if (buffer instanceof DataBufferByte bytes && colorModel instanceof ComponentColorModel
+                && sampleModel instanceof PixelInterleavedSampleModel interleaved
+                && allBandsAreBytes(colorModel) && bytes.getNumBanks() == 1) {
+            inverter = byteRows(raster, colorModel, interleaved, bytes.getData());
+        } else if (buffer instanceof DataBufferInt ints && colorModel instanceof DirectColorModel direct
+                && sampleModel instanceof SinglePixelPackedSampleModel packed && ints.getNumBanks() == 1) {
+            inverter = intRows(raster, direct, packed, ints.getData());
+        } else {
+            inverter = rgbRows(image);
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if ((long) width * height < PARALLEL_MIN_PIXELS) {
+            inverter.invert(0, height);
+            return;
+        }
+        int rowsPerBand = Math.max(1, PIXELS_PER_BAND / Math.max(width, 1));
+        int bands = (height + rowsPerBand - 1) / rowsPerBand;
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int from = band * rowsPerBand;
+            inverter.invert(from, Math.min(height, from + rowsPerBand));
+        });
+    }
+
+    private static boolean allBandsAreBytes(ColorModel colorModel) {
+        for (int bits : colorModel.getComponentSize()) {
+            if (bits != 8) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Байты одного пикселя идут подряд с шагом pixelStride; инвертируются все, кроме альфы
+    private static RowInverter byteRows(WritableRaster raster, ColorModel colorModel,
+                                        PixelInterleavedSampleModel sampleModel, byte[] data) {
+        int width = raster.getWidth();
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        // Альфа — последняя составляющая цветовой модели
+        int colorBands = colorModel.getNumColorComponents();
+        // Начало пикселя (0, 0) растра; у вырезанного getSubimage растра он сдвинут в данных
+        // родителя. getOffset здесь не подходит: он уже прибавляет смещение первой составляющей
+        int start = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX() * pixelStride;
+
+        if (pixelStride == bandOffsets.length) {
+            // Пиксели плотно, без промежутков: вся строка инвертируется одной сплошной петлёй,
+            // которую JIT векторизует, а байты альфы затем возвращаются обратно. Это быстрее
+            // петли по пикселям, пропускающей альфу
+            int rowLength = width * pixelStride;
+            int rowStart = start + Arrays.stream(bandOffsets).min().getAsInt();
+            int alpha = colorModel.hasAlpha() ? bandOffsets[colorBands] : -1;
+            return (from, to) -> {
+                for (int y = from; y < to; y++) {
+                    int offset = rowStart + y * scanlineStride;
+                    int end = offset + rowLength;
+                    for (int i = offset; i < end; i++) {
+                        data[i] = (byte) ~data[i];
+                    }
+                    if (alpha >= 0) {
+                        for (int i = start + y * scanlineStride + alpha; i < end; i += pixelStride) {
+                            data[i] = (byte) ~data[i];
+                        }
+                    }
+                }
+            };
+        }
+        int[] colorOffsets = Arrays.copyOf(bandOffsets, colorBands);
+        return (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int pixel = start + y * scanlineStride;
+                for (int x = 0; x < width; x++, pixel += pixelStride) {
+                    for (int offset : colorOffsets) {
+                        data[pixel + offset] = (byte) ~data[pixel + offset];
+                    }
+                }
+            }
+        };
+    }
+
+    private static RowInverter intRows(WritableRaster raster, DirectColorModel colorModel,
+                                       SinglePixelPackedSampleModel sampleModel, int[] data) {
+        int width = raster.getWidth();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int colorMask = colorModel.getRedMask() | colorModel.getGreenMask() | colorModel.getBlueMask();
+        int start = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX();
+        return (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int offset = start + y * scanlineStride;
+                for (int i = offset, end = offset + width; i < end; i++) {
+                    data[i] ^= colorMask;
+                }
+            }
+        };
+    }
+
+    // Запасной путь: getRGB/setRGB по строке сразу, с сохранением альфы
+    private static RowInverter rgbRows(BufferedImage image) {
+        int width = image.getWidth();
+        return (from, to) -> {
+            int[] row = new int[width];
+            for (int y = from; y < to; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    row[x] ^= 0x00FFFFFF;
+                }
+                image.setRGB(0, y, width, 1, row, 0, width);
+            }
+        };
+    }
+
+    private interface RowInverter {
+        // Инвертирует строки from..to-1
+        void invert(int from, int to);
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Журнал обработанных файлов для повторных запусков (/inc): для каждого исходного файла
+ * и операции — размер и время изменения исходного и результата и SHA-256 содержимого результата.
+ * Файл, который с прошлого запуска не менялся, обрабатывать заново не нужно: при совпадении
+ * размеров и времён он пропускается без чтения, при совпадении только размеров сравнивается
+ * содержимое (например, после восстановления дерева из резервной копии).
+ *
+ * Для /c журнал служит ещё и индексом копий по содержимому: файл с тем же содержимым, что
+ * у уже скопированного, становится жёсткой ссылкой на копию, а не новой копией.
+ *
+ * Записи разных операций над одним файлом хранятся отдельно, так что, например, чередование
+ * /s и /c над одним деревом не сбрасывает друг друга. Журнал — текстовый файл, строка на
+ * запись, поля через табуляцию. Он только ускоряет работу: нечитаемые строки и испорченный
+ * журнал пропускаются, и файлы обрабатываются заново.
+ * Потокобезопасен.
+ */
+final class ProcessingManifest {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String COPY_OPERATION = "/c";
+
+    // Состояние файлов после обработки; для операций на месте source и output совпадают
+    private record Entry(String source, String operation, long sourceSize, long sourceModified, String output,
+                         long outputSize, long outputModified, String hash) {
+    }
+
+    private final Path file;
+    // Ключ — абсолютный путь исходного файла и операция
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Содержимое -> запись о копии, сделанной /c
+    private final Map<String, Entry> copies = new ConcurrentHashMap<>();
+
+    private ProcessingManifest(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Читает журнал из file; если его нет, журнал пуст.
+     */
+    static ProcessingManifest load(Path file) {
+        ProcessingManifest manifest = new ProcessingManifest(file);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                manifest.parse(line);
+            }
+        } catch (NoSuchFileException e) {
+            // Первый запуск
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Журнал " + file + " не прочитан, все файлы будут обработаны: " + e.getMessage());
+            manifest.entries.clear();
+            manifest.copies.clear();
+        }
+        return manifest;
+    }
+
+    private void parse(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length != 8) {
+            return;
+        }
+        try {
+            put(new Entry(fields[0], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4],
+                    Long.parseLong(fields[5]), Long.parseLong(fields[6]), fields[7]));
+        } catch (NumberFormatException e) {
+            // Испорченная строка: файл будет обработан заново
+        }
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.source() + "\t" + entry.operation(), entry);
+        if (entry.operation().equals(COPY_OPERATION)) {
+            copies.put(entry.hash(), entry);
+        }
+    }
+
+    /**
+     * true, если source уже обработан операцией operation с результатом в output и с тех пор
+     * не менялись ни он, ни результат.
+     */
+    boolean isUpToDate(Path source, String operation, Path output) throws IOException {
+        Entry entry = entries.get(key(source) + "\t" + operation);
+        if (entry == null || !entry.output().equals(key(output))) {
+            return false;
+        }
+        BasicFileAttributes sourceAttributes = attributes(source);
+        BasicFileAttributes outputAttributes = attributes(output);
+        if (sourceAttributes == null || outputAttributes == null || sourceAttributes.size() != entry.sourceSize()
+                || outputAttributes.size() != entry.outputSize()) {
+            return false;
+        }
+        long sourceModified = sourceAttributes.lastModifiedTime().toMillis();
+        long outputModified = outputAttributes.lastModifiedTime().toMillis();
+        if (sourceModified == entry.sourceModified() && outputModified == entry.outputModified()) {
+            return true;
+        }
+
+        // Время изменилось при том же размере: решает содержимое. У /c исходный файл и результат
+        // совпадают по содержимому, у операций на месте это один файл
+        if (!hash(source).equals(entry.hash()) || !source.equals(output) && !hash(output).equals(entry.hash())) {
+            return false;
+        }
+        put(new Entry(entry.source(), operation, entry.sourceSize(), sourceModified, entry.output(), entry.outputSize(),
+                outputModified, entry.hash()));
+        return true;
+    }
+
+    /**
+     * Запоминает, что source обработан операцией operation; output — результат с содержимым hash.
+     */
+    void record(Path source, String operation, Path output, String hash) throws IOException {
+        BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+        BasicFileAttributes outputAttributes = source.equals(output)
+                ? sourceAttributes : Files.readAttributes(output, BasicFileAttributes.class);
+        put(new Entry(key(source), operation, sourceAttributes.size(), sourceAttributes.lastModifiedTime().toMillis(),
+                key(output), outputAttributes.size(), outputAttributes.lastModifiedTime().toMillis(), hash));
+    }
+
+    /**
+     * Копия, сделанная /c, с содержимым hash, если она существует и не менялась, иначе null.
+     */
+    Path findCopy(String hash) throws IOException {
+        Entry copy = copies.get(hash);
+        if (copy == null) {
+            return null;
+        }
+        Path path = Paths.get(copy.output());
+        BasicFileAttributes attributes = attributes(path);
+        return attributes != null && attributes.size() == copy.outputSize()
+                && attributes.lastModifiedTime().toMillis() == copy.outputModified() ? path : null;
+    }
+
+    /**
+     * Записывает журнал на диск, забывая файлы, которых больше нет. Старый журнал заменяется
+     * целиком, так что прерванная запись его не портит.
+     */
+    void save() throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Entry entry : entries.values()) {
+                    // Пути с табуляцией или переводом строки не записать в строку журнала
+                    if (!isWritable(entry.source()) || !isWritable(entry.output())
+                            || !Files.exists(Paths.get(entry.source()))) {
+                        continue;
+                    }
+                    writer.write(String.join("\t", entry.source(), entry.operation(), Long.toString(entry.sourceSize()),
+                            Long.toString(entry.sourceModified()), entry.output(), Long.toString(entry.outputSize()),
+                            Long.toString(entry.outputModified()), entry.hash()));
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * SHA-256 содержимого файла в шестнадцатеричном виде.
+     */
+    static String hash(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязан поддерживать любой JDK
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(path)) {
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static boolean isWritable(String path) {
+        return path.indexOf('\t') < 0 && path.indexOf('\n') < 0 && path.indexOf('\r') < 0;
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Изменение размера изображения раздельным фильтром: сначала по строкам, затем по столбцам.
+ * Веса фильтра для каждой выходной строки и столбца считаются один раз. При уменьшении фильтр
+ * растягивается на 1 / масштаб исходных пикселей, чтобы не было муара; уменьшение больше
+ * чем вдвое сначала делается последовательными уменьшениями вдвое усреднением квадратов 2x2,
+ * что дешевле широкого фильтра и почти не отличается по качеству.
+ *
+ * Цвета смешиваются с премультиплицированной альфой, чтобы прозрачные пиксели не окрашивали
+ * соседей. Результат делится на плитки TILE_WIDTH x TILE_HEIGHT выходных пикселей, которые
+ * считаются параллельно на общем ForkJoinPool; промежуточные строки плитки помещаются в кэш
+ * процессора. Тип результата — тип исходного изображения, в том числе TYPE_CUSTOM: результат
+ * создаётся по его цветовой модели.
+ */
+final class Resampler {
+    enum Filter {
+        BILINEAR(1) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                return x < 1 ? 1 - x : 0;
+            }
+        },
+        // Catmull-Rom: кубический сплайн, проходящий через исходные пиксели
+        BICUBIC(2) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x < 1) {
+                    return (1.5 * x - 2.5) * x * x + 1;
+                }
+                return x < 2 ? ((-0.5 * x + 2.5) * x - 4) * x + 2 : 0;
+            }
+        },
+        LANCZOS(3) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x < 1e-9) {
+                    return 1;
+                }
+                if (x >= 3) {
+                    return 0;
+                }
+                double px = Math.PI * x;
+                return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+            }
+        };
+
+        // Радиус фильтра в исходных пикселях при масштабе 1
+        final int support;
+
+        Filter(int support) {
+            this.support = support;
+        }
+
+        abstract double weight(double x);
+    }
+
+    private static final int TILE_WIDTH = 256;
+    private static final int TILE_HEIGHT = 32;
+
+    private Resampler() {
+    }
+
+    static BufferedImage resize(BufferedImage source, int width, int height, Filter filter) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Размер изображения должен быть положительным: " + width + "x" + height);
+        }
+        Rows rows = new ImageRows(source);
+        while (rows.width() >= 2 * width || rows.height() >= 2 * height) {
+            rows = halve(rows, rows.width() >= 2 * width, rows.height() >= 2 * height);
+        }
+
+        BufferedImage result = createCompatible(source, width, height);
+        Kernel horizontal = new Kernel(rows.width(), width, filter);
+        Kernel vertical = new Kernel(rows.height(), height, filter);
+        Rows input = rows;
+        int columns = (width + TILE_WIDTH - 1) / TILE_WIDTH;
+        int tiles = columns * ((height + TILE_HEIGHT - 1) / TILE_HEIGHT);
+        IntStream.range(0, tiles).parallel().forEach(tile -> {
+            int x = tile % columns * TILE_WIDTH;
+            int y = tile / columns * TILE_HEIGHT;
+            resampleTile(input, result, horizontal, vertical, x, Math.min(width, x + TILE_WIDTH),
+                    y, Math.min(height, y + TILE_HEIGHT));
+        });
+        return result;
+    }
+
+    /**
+     * Пустое изображение того же типа и цветовой модели, что source.
+     */
+    static BufferedImage createCompatible(BufferedImage source, int width, int height) {
+        if (source.getType() != BufferedImage.TYPE_CUSTOM) {
+            if (source.getColorModel() instanceof IndexColorModel palette) {
+                return new BufferedImage(width, height, source.getType(), palette);
+            }
+            return new BufferedImage(width, height, source.getType());
+        }
+        WritableRaster raster = source.getColorModel().createCompatibleWritableRaster(width, height);
+        return new BufferedImage(source.getColorModel(), raster, source.isAlphaPremultiplied(), null);
+    }
+
+    // Плитка выходных пикселей [left, right) x [top, bottom): проход по строкам нужных исходных
+    // строк, затем по столбцам
+    private static void resampleTile(Rows input, BufferedImage result, Kernel horizontal, Kernel vertical,
+                                     int left, int right, int top, int bottom) {
+        int firstRow = vertical.first(top, bottom);
+        int lastRow = vertical.last(top, bottom);
+        int firstColumn = horizontal.first(left, right);
+        int tileWidth = right - left;
+        int rowLength = tileWidth * 4;
+        float[] filtered = new float[(lastRow - firstRow + 1) * rowLength];
+        int[] row = new int[horizontal.last(left, right) - firstColumn + 1];
+        for (int y = firstRow; y <= lastRow; y++) {
+            input.read(y, firstColumn, row.length, row);
+            int base = (y - firstRow) * rowLength;
+            for (int x = left; x < right; x++) {
+                float a = 0;
+                float r = 0;
+                float g = 0;
+                float b = 0;
+                for (int t = x * horizontal.taps, end = t + horizontal.taps; t < end; t++) {
+                    int pixel = row[horizontal.index[t] - firstColumn];
+                    float w = horizontal.weights[t];
+                    a += w * (pixel >>> 24);
+                    r += w * ((pixel >> 16) & 0xFF);
+                    g += w * ((pixel >> 8) & 0xFF);
+                    b += w * (pixel & 0xFF);
+                }
+                int i = base + (x - left) * 4;
+                filtered[i] = a;
+                filtered[i + 1] = r;
+                filtered[i + 2] = g;
+                filtered[i + 3] = b;
+            }
+        }
+
+        // По столбцам целыми строками плитки: сумма строк с весами
+        float[] sum = new float[rowLength];
+        int[] out = new int[tileWidth];
+        for (int y = top; y < bottom; y++) {
+            Arrays.fill(sum, 0);
+            for (int t = y * vertical.taps, end = t + vertical.taps; t < end; t++) {
+                float w = vertical.weights[t];
+                int offset = (vertical.index[t] - firstRow) * rowLength;
+                for (int i = 0; i < rowLength; i++) {
+                    sum[i] += w * filtered[offset + i];
+                }
+            }
+            for (int x = 0, i = 0; x < tileWidth; x++, i += 4) {
+                out[x] = unpremultiply(clamp(sum[i]), sum[i + 1], sum[i + 2], sum[i + 3]);
+            }
+            writeRow(result, left, y, out);
+        }
+    }
+
+    /**
+     * Уменьшение вдвое по выбранным осям: каждый выходной пиксель — среднее 2x2 (или 2x1)
+     * исходных. У нечётной стороны последний пиксель усредняется сам с собой.
+     */
+    private static Rows halve(Rows input, boolean halveX, boolean halveY) {
+        int width = halveX ? (input.width() + 1) / 2 : input.width();
+        int height = halveY ? (input.height() + 1) / 2 : input.height();
+        int[] data = new int[width * height];
+        int bands = (height + TILE_HEIGHT - 1) / TILE_HEIGHT;
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int[] top = new int[input.width()];
+            int[] bottom = new int[input.width()];
+            for (int y = band * TILE_HEIGHT, end = Math.min(height, y + TILE_HEIGHT); y < end; y++) {
+                int sourceY = halveY ? 2 * y : y;
+                input.read(sourceY, 0, input.width(), top);
+                input.read(halveY ? Math.min(sourceY + 1, input.height() - 1) : sourceY, 0, input.width(), bottom);
+                for (int x = 0; x < width; x++) {
+                    int left = halveX ? 2 * x : x;
+                    int right = halveX ? Math.min(left + 1, input.width() - 1) : left;
+                    data[y * width + x] = average(top[left], top[right], bottom[left], bottom[right]);
+                }
+            }
+        });
+        return new PackedRows(data, width, height);
+    }
+
+    private static int average(int p, int q, int r, int s) {
+        int a = ((p >>> 24) + (q >>> 24) + (r >>> 24) + (s >>> 24) + 2) >> 2;
+        int red = (((p >> 16) & 0xFF) + ((q >> 16) & 0xFF) + ((r >> 16) & 0xFF) + ((s >> 16) & 0xFF) + 2) >> 2;
+        int green = (((p >> 8) & 0xFF) + ((q >> 8) & 0xFF) + ((r >> 8) & 0xFF) + ((s >> 8) & 0xFF) + 2) >> 2;
+        int blue = ((p & 0xFF) + (q & 0xFF) + (r & 0xFF) + (s & 0xFF) + 2) >> 2;
+        return a << 24 | red << 16 | green << 8 | blue;
+    }
+
+    private static int clamp(float value) {
+        return value <= 0 ? 0 : value >= 255 ? 255 : (int) (value + 0.5f);
+    }
+
+    // Из премультиплицированных составляющих в обычный ARGB; цвет не может быть больше альфы
+    private static int unpremultiply(int a, float r, float g, float b) {
+        if (a == 0) {
+            return 0;
+        }
+        int red = Math.min(clamp(r), a);
+        int green = Math.min(clamp(g), a);
+        int blue = Math.min(clamp(b), a);
+        if (a != 255) {
+            red = (red * 255 + a / 2) / a;
+            green = (green * 255 + a / 2) / a;
+            blue = (blue * 255 + a / 2) / a;
+        }
+        return a << 24 | red << 16 | green << 8 | blue;
+    }
+
+    private static int premultiply(int argb) {
+        int a = argb >>> 24;
+        if (a == 255) {
+            return argb;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        int red = (((argb >> 16) & 0xFF) * a + 127) / 255;
+        int green = (((argb >> 8) & 0xFF) * a + 127) / 255;
+        int blue = ((argb & 0xFF) * a + 127) / 255;
+        return a << 24 | red << 16 | green << 8 | blue;
+    }
+
+    // Запись argb (обычный ARGB) в строку y с столбца x; у распространённых типов — прямо в данные растра
+    private static void writeRow(BufferedImage image, int x, int y, int[] argb) {
+        int length = argb.length;
+        int width = image.getWidth();
+        WritableRaster raster = image.getRaster();
+        switch (image.getType()) {
+            // Результат создан createCompatible, его растр всегда сплошной
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                System.arraycopy(argb, 0, data, y * width + x, length);
+                return;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                for (int k = 0, i = (y * width + x) * 3; k < length; k++, i += 3) {
+                    int pixel = argb[k];
+                    data[i] = (byte) pixel;
+                    data[i + 1] = (byte) (pixel >> 8);
+                    data[i + 2] = (byte) (pixel >> 16);
+                }
+                return;
+            }
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                for (int k = 0, i = (y * width + x) * 4; k < length; k++, i += 4) {
+                    int pixel = argb[k];
+                    data[i] = (byte) (pixel >>> 24);
+                    data[i + 1] = (byte) pixel;
+                    data[i + 2] = (byte) (pixel >> 8);
+                    data[i + 3] = (byte) (pixel >> 16);
+                }
+                return;
+            }
+            default:
+                image.setRGB(x, y, length, 1, argb, 0, length);
+        }
+    }
+
+    /**
+     * Пиксели растра лежат в данных с начала, строка за строкой без промежутков — как у растра,
+     * созданного конструктором BufferedImage, но не у вырезанного getSubimage.
+     */
+    private static boolean isPlain(WritableRaster raster) {
+        if (raster.getParent() != null || raster.getDataBuffer().getOffset() != 0
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            return false;
+        }
+        SampleModel sampleModel = raster.getSampleModel();
+        if (sampleModel instanceof SinglePixelPackedSampleModel packed) {
+            return packed.getScanlineStride() == raster.getWidth();
+        }
+        if (sampleModel instanceof PixelInterleavedSampleModel interleaved) {
+            return interleaved.getScanlineStride() == raster.getWidth() * interleaved.getPixelStride()
+                    && interleaved.getPixelStride() == interleaved.getNumBands();
+        }
+        return false;
+    }
+
+    /**
+     * Веса фильтра: выходной пиксель i — сумма weights[i * taps + t] * вход[index[i * taps + t]].
+     * Индексы за краем изображения заменены крайним пикселем, веса нормированы к сумме 1.
+     */
+    private static final class Kernel {
+        final int outSize;
+        final int taps;
+        final int[] index;
+        final float[] weights;
+
+        Kernel(int inSize, int outSize, Filter filter) {
+            this.outSize = outSize;
+            double scale = (double) outSize / inSize;
+            double stretch = Math.max(1, 1 / scale);
+            double support = filter.support * stretch;
+            // Пикселей в открытом интервале (center - support, center + support) не больше ceil(2 * support)
+            taps = (int) Math.ceil(2 * support);
+            index = new int[outSize * taps];
+            weights = new float[outSize * taps];
+            for (int i = 0; i < outSize; i++) {
+                double center = (i + 0.5) / scale - 0.5;
+                int first = (int) Math.floor(center - support) + 1;
+                double sum = 0;
+                for (int t = 0; t < taps; t++) {
+                    int j = first + t;
+                    double w = filter.weight((j - center) / stretch);
+                    index[i * taps + t] = Math.min(Math.max(j, 0), inSize - 1);
+                    weights[i * taps + t] = (float) w;
+                    sum += w;
+                }
+                for (int t = 0; t < taps; t++) {
+                    weights[i * taps + t] /= (float) sum;
+                }
+            }
+        }
+
+        // Наименьший и наибольший входной индекс для выходных from..to-1
+        int first(int from, int to) {
+            int first = index[from * taps];
+            for (int i = from * taps; i < to * taps; i++) {
+                first = Math.min(first, index[i]);
+            }
+            return first;
+        }
+
+        int last(int from, int to) {
+            int last = index[from * taps];
+            for (int i = from * taps; i < to * taps; i++) {
+                last = Math.max(last, index[i]);
+            }
+            return last;
+        }
+    }
+
+    // Строки изображения как премультиплицированный ARGB
+    private interface Rows {
+        int width();
+
+        int height();
+
+        // length пикселей строки y, начиная со столбца x
+        void read(int y, int x, int length, int[] row);
+    }
+
+    private static final class ImageRows implements Rows {
+        private final BufferedImage image;
+
+        ImageRows(BufferedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        public int width() {
+            return image.getWidth();
+        }
+
+        @Override
+        public int height() {
+            return image.getHeight();
+        }
+
+        @Override
+        public void read(int y, int x, int length, int[] row) {
+            int width = image.getWidth();
+            WritableRaster raster = image.getRaster();
+            switch (isPlain(raster) ? image.getType() : BufferedImage.TYPE_CUSTOM) {
+                case BufferedImage.TYPE_INT_RGB: {
+                    int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                    for (int k = 0, i = y * width + x; k < length; k++, i++) {
+                        row[k] = 0xFF000000 | data[i];
+                    }
+                    return;
+                }
+                case BufferedImage.TYPE_INT_ARGB: {
+                    int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                    for (int k = 0, i = y * width + x; k < length; k++, i++) {
+                        row[k] = premultiply(data[i]);
+                    }
+                    return;
+                }
+                case BufferedImage.TYPE_3BYTE_BGR: {
+                    byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                    for (int k = 0, i = (y * width + x) * 3; k < length; k++, i += 3) {
+                        row[k] = 0xFF000000 | (data[i + 2] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | data[i] & 0xFF;
+                    }
+                    return;
+                }
+                case BufferedImage.TYPE_4BYTE_ABGR: {
+                    byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                    for (int k = 0, i = (y * width + x) * 4; k < length; k++, i += 4) {
+                        row[k] = premultiply((data[i] & 0xFF) << 24 | (data[i + 3] & 0xFF) << 16
+                                | (data[i + 2] & 0xFF) << 8 | data[i + 1] & 0xFF);
+                    }
+                    return;
+                }
+                default:
+                    image.getRGB(x, y, length, 1, row, 0, length);
+                    for (int k = 0; k < length; k++) {
+                        row[k] = premultiply(row[k]);
+                    }
+            }
+        }
+    }
+
+    private static final class PackedRows implements Rows {
+        private final int[] data;
+        private final int width;
+        private final int height;
+
+        PackedRows(int[] data, int width, int height) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int width() {
+            return width;
+        }
+
+        @Override
+        public int height() {
+            return height;
+        }
+
+        @Override
+        public void read(int y, int x, int length, int[] row) {
+            System.arraycopy(data, y * width + x, row, 0, length);
+        }
+    }
+}